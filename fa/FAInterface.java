@@ -32,6 +32,34 @@ public interface FAInterface {
 	 */
 	public abstract void addTransition(String fromState, char onSymb,
 			String toState);
+
+	/**
+	 * Adds non-final, not initial states to the FA in one pass
+	 * @param names are the labels of the states
+	 */
+	public abstract void addStates(Iterable<String> names);
+
+	/**
+	 * Adds final states to the FA in one pass
+	 * @param names are the labels of the states
+	 */
+	public abstract void addFinalStates(Iterable<String> names);
+
+	/**
+	 * Adds a batch of transitions to the FA's delta data structure in one pass
+	 * @param transitions are the transitions, added in iteration order
+	 */
+	public abstract void addTransitions(Iterable<? extends Transition> transitions);
+
+	/**
+	 * Adds a batch of transitions given as parallel arrays, so that
+	 * transition i goes from fromStates[i] on onSymbs[i] to toStates[i]
+	 * @param fromStates are the labels of the states where the transitions start
+	 * @param onSymbs are the symbols from the FA's alphabet
+	 * @param toStates are the labels of the states where the transitions end
+	 */
+	public abstract void addTransitions(String[] fromStates, char[] onSymbs,
+			String[] toStates);
 	
 	/**
 	 * Getter for Q
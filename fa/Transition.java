@@ -0,0 +1,49 @@
+package fa;
+
+/**
+ * One entry of a transition function, used to hand
+ * a batch of transitions to an FA at once.
+ * @author Ben Harper and Andrew Haddon
+ */
+public class Transition {
+	private final String fromState;
+	private final char onSymb;
+	private final String toState;
+
+	/**
+	 * @param fromState is the label of the state where the transition starts
+	 * @param onSymb is the symbol from the FA's alphabet
+	 * @param toState is the label of the state where the transition ends
+	 */
+	public Transition(String fromState, char onSymb, String toState) {
+		this.fromState = fromState;
+		this.onSymb = onSymb;
+		this.toState = toState;
+	}
+
+	/**
+	 * @return the label of the state where the transition starts
+	 */
+	public String getFromState() {
+		return fromState;
+	}
+
+	/**
+	 * @return the symbol of the transition
+	 */
+	public char getOnSymb() {
+		return onSymb;
+	}
+
+	/**
+	 * @return the label of the state where the transition ends
+	 */
+	public String getToState() {
+		return toState;
+	}
+
+	@Override
+	public String toString() {
+		return "" + fromState + onSymb + toState;
+	}
+}
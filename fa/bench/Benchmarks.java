@@ -0,0 +1,308 @@
+package fa.bench;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import fa.State;
+import fa.dfa.CompiledDFA;
+import fa.dfa.DFA;
+import fa.nfa.LazyDFA;
+import fa.nfa.NFA;
+import fa.nfa.NFALoader;
+import fa.nfa.NFAState;
+
+/**
+ * Times every phase of the pipeline on the generated worst cases:
+ * parsing, e closures, conversion, minimization and matching.
+ * Each benchmark is warmed up, then run a number of times, and the
+ * median time and the bytes allocated per run are reported, the
+ * latter summed over the JVM's allocation counters of every live
+ * thread, so the work parallel benchmarks hand to pool threads is
+ * counted too. A thread that ends during a run is left out.
+ * Usage: java fa.bench.Benchmarks [runs] [name filter]
+ * @author Ben Harper and Andrew Haddon
+ */
+public class Benchmarks {
+
+	/**
+	 * One benchmark. setup is not measured, run is.
+	 */
+	private abstract static class Benchmark {
+		private final String name;
+
+		Benchmark(String name) {
+			this.name = name;
+		}
+
+		void setup() throws Exception {
+		}
+
+		abstract Object run() throws Exception;
+	}
+
+	private static final int WARMUP = 3;
+
+	//keeps results alive so the JIT can't drop the work
+	private static Object sink;
+
+	/**
+	 * @param args - optional number of measured runs and a substring
+	 * the benchmark names must contain
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		String filter = args.length > 1 ? args[1] : "";
+		System.out.println(String.format(Locale.ROOT, "%-40s %14s %16s", "benchmark", "median ms", "alloc bytes/op"));
+		for (int n : new int[] {8, 12, 16}) {
+			conversion("getDFA exponential n=" + n, Generators.exponential(n), runs, filter);
+		}
+		for (int n : new int[] {12, 18}) {
+			conversion("getDFA dense n=" + n, Generators.denseRandom(n, 2, n), runs, filter);
+		}
+		for (int k : new int[] {64, 1024}) {
+			conversion("getDFA alphabet k=" + k, Generators.largeAlphabet(10, k, k), runs, filter);
+		}
+		//the closures of a chain add up to n^2 / 2 states, those of a cycle to n^2
+		for (int n : new int[] {1000, 3000}) {
+			closures("eClosure chain n=" + n, Generators.epsilonChain(n), runs, filter);
+			closures("eClosure cycle n=" + n, Generators.epsilonCycle(n), runs, filter);
+		}
+		for (int n : new int[] {1000, 10000}) {
+			conversion("getDFA chain n=" + n, Generators.epsilonChain(n), runs, filter);
+			conversion("getDFA cycle n=" + n, Generators.epsilonCycle(n), runs, filter);
+		}
+		for (int n : new int[] {12, 16}) {
+			minimize("minimize exponential n=" + n, Generators.exponential(n), runs, filter);
+			matching("exponential n=" + n, Generators.exponential(n), new char[] {'a', 'b'}, runs, filter);
+		}
+		matching("dense n=14", Generators.denseRandom(14, 2, 14), new char[] {'0', '1'}, runs, filter);
+		for (int t : new int[] {10000, 1000000}) {
+			parsing("NFALoader transitions=" + t, t, runs, filter);
+		}
+	}
+
+	/**
+	 * Converts a fresh copy of the machine each run, since getDFA is memoized
+	 */
+	private static void conversion(String name, final NFA template, int runs, String filter) throws Exception {
+		measure(new Benchmark(name) {
+			private NFA nfa;
+
+			@Override
+			void setup() {
+				nfa = copy(template);
+			}
+
+			@Override
+			Object run() {
+				return nfa.getDFA();
+			}
+		}, runs, filter);
+	}
+
+	/**
+	 * Asks for every closure of a fresh copy of the machine and goes through its states
+	 */
+	private static void closures(String name, final NFA template, int runs, String filter) throws Exception {
+		measure(new Benchmark(name) {
+			private NFA nfa;
+
+			@Override
+			void setup() {
+				nfa = copy(template);
+			}
+
+			@Override
+			Object run() {
+				int total = 0;
+				for (State s : nfa.getStates()) {
+					for (NFAState t : nfa.eClosure((NFAState) s)) {
+						total += t.getName().length();
+					}
+				}
+				return total;
+			}
+		}, runs, filter);
+	}
+
+	private static void minimize(String name, NFA nfa, int runs, String filter) throws Exception {
+		final DFA dfa = nfa.getDFA();
+		measure(new Benchmark(name) {
+			@Override
+			Object run() {
+				return dfa.minimize();
+			}
+		}, runs, filter);
+	}
+
+	/**
+	 * Classifies the same 10000 strings of length 64 with each matcher
+	 */
+	private static void matching(String name, final NFA nfa, char[] abc, int runs, String filter) throws Exception {
+		final String[] inputs = Generators.strings(abc, 10000, 64, 42);
+		final DFA dfa = nfa.getDFA();
+		final CompiledDFA compiled = dfa.compile();
+		measure(new Benchmark("DFA.accepts " + name) {
+			@Override
+			Object run() {
+				int yes = 0;
+				for (String s : inputs) {
+					yes += dfa.accepts(s) ? 1 : 0;
+				}
+				return yes;
+			}
+		}, runs, filter);
+		measure(new Benchmark("CompiledDFA.accepts " + name) {
+			@Override
+			Object run() {
+				int yes = 0;
+				for (String s : inputs) {
+					yes += compiled.accepts(s) ? 1 : 0;
+				}
+				return yes;
+			}
+		}, runs, filter);
+		measure(new Benchmark("CompiledDFA.acceptsAll " + name) {
+			@Override
+			Object run() {
+				return compiled.acceptsAll(Arrays.asList(inputs));
+			}
+		}, runs, filter);
+		measure(new Benchmark("NFA.accepts " + name) {
+			@Override
+			Object run() {
+				int yes = 0;
+				for (String s : inputs) {
+					yes += nfa.accepts(s) ? 1 : 0;
+				}
+				return yes;
+			}
+		}, runs, filter);
+		measure(new Benchmark("LazyDFA.accepts " + name) {
+			private LazyDFA lazy;
+
+			@Override
+			void setup() {
+				lazy = new LazyDFA(nfa);
+			}
+
+			@Override
+			Object run() {
+				int yes = 0;
+				for (String s : inputs) {
+					yes += lazy.accepts(s) ? 1 : 0;
+				}
+				return yes;
+			}
+		}, runs, filter);
+	}
+
+	/**
+	 * Loads a generated driver file and reads all of its test strings
+	 */
+	private static void parsing(String name, int transitions, int runs, String filter) throws Exception {
+		final Path file = Files.createTempFile("nfa", ".txt");
+		file.toFile().deleteOnExit();
+		Files.write(file, Generators.driverFile(transitions, 10000, transitions)
+				.getBytes(StandardCharsets.US_ASCII));
+		measure(new Benchmark(name) {
+			@Override
+			Object run() throws IOException {
+				NFALoader loader = new NFALoader(file);
+				try {
+					NFA nfa = loader.readNFA();
+					int tests = 0;
+					while (loader.nextTestString() != null) {
+						tests++;
+					}
+					return tests + nfa.getStates().size();
+				} finally {
+					loader.close();
+				}
+			}
+		}, runs, filter);
+	}
+
+	/**
+	 * Warms a benchmark up, runs it and prints the median time and allocation
+	 */
+	private static void measure(Benchmark b, int runs, String filter) throws Exception {
+		if (!b.name.contains(filter)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		for (int i = 0; i < WARMUP; i++) {
+			b.setup();
+			sink = b.run();
+		}
+		long[] times = new long[runs];
+		long[] bytes = new long[runs];
+		for (int i = 0; i < runs; i++) {
+			b.setup();
+			Map<Long, Long> allocated = allocated(threads);
+			long start = System.nanoTime();
+			sink = b.run();
+			times[i] = System.nanoTime() - start;
+			for (Map.Entry<Long, Long> e : allocated(threads).entrySet()) {
+				Long before = allocated.get(e.getKey());
+				bytes[i] += e.getValue() - (before == null ? 0 : before);
+			}
+		}
+		Arrays.sort(times);
+		Arrays.sort(bytes);
+		System.out.println(String.format(Locale.ROOT, "%-40s %14.3f %16d",
+				b.name, times[runs / 2] / 1e6, bytes[runs / 2]));
+	}
+
+	/**
+	 * Reads the bytes every live thread has allocated so far
+	 * @return Map<Long, Long> - the count of each thread by its id
+	 */
+	private static Map<Long, Long> allocated(com.sun.management.ThreadMXBean threads) {
+		long[] ids = threads.getAllThreadIds();
+		long[] bytes = threads.getThreadAllocatedBytes(ids);
+		Map<Long, Long> ret = new HashMap<Long, Long>();
+		for (int i = 0; i < ids.length; i++) {
+			//-1 for a thread that ended in between
+			if (bytes[i] >= 0) {
+				ret.put(ids[i], bytes[i]);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Copies an NFA through its public getters, keeping state and symbol order
+	 */
+	private static NFA copy(NFA nfa) {
+		NFA ret = new NFA();
+		for (State s : nfa.getFinalStates()) {
+			ret.addFinalState(s.getName());
+		}
+		ret.addStartState(nfa.getStartState().getName());
+		for (State s : nfa.getStates()) {
+			ret.addState(s.getName());
+		}
+		for (State s : nfa.getStates()) {
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = nfa.getToState((NFAState) s, c);
+				if (to != null) {
+					for (NFAState t : to) {
+						ret.addTransition(s.getName(), c, t.getName());
+					}
+				}
+			}
+		}
+		return ret;
+	}
+}
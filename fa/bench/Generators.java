@@ -0,0 +1,189 @@
+package fa.bench;
+
+import java.util.Random;
+
+import fa.nfa.NFA;
+
+/**
+ * Builds NFAs that are known to be hard for one phase or another,
+ * sized by a parameter, for the benchmarks.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class Generators {
+
+	private Generators() {
+	}
+
+	/**
+	 * The NFA for (a|b)*a(a|b)^n, whose DFA has 2^(n+1) states
+	 * @param int n - how many symbols after the a are checked
+	 * @return NFA - the machine, with states q0 to q(n+1)
+	 */
+	public static NFA exponential(int n) {
+		NFA nfa = new NFA();
+		nfa.addStartState("q0");
+		for (int i = 1; i <= n; i++) {
+			nfa.addState("q" + i);
+		}
+		nfa.addFinalState("q" + (n + 1));
+		nfa.addTransition("q0", 'a', "q0");
+		nfa.addTransition("q0", 'b', "q0");
+		nfa.addTransition("q0", 'a', "q1");
+		for (int i = 1; i <= n; i++) {
+			nfa.addTransition("q" + i, 'a', "q" + (i + 1));
+			nfa.addTransition("q" + i, 'b', "q" + (i + 1));
+		}
+		return nfa;
+	}
+
+	/**
+	 * A chain of n states joined by e transitions, where each state also
+	 * loops on a, and only the last one is final. Every closure is a
+	 * suffix of the chain.
+	 * @param int n - the number of states
+	 * @return NFA - the machine, with states s0 to s(n-1)
+	 */
+	public static NFA epsilonChain(int n) {
+		NFA nfa = new NFA();
+		nfa.addStartState("s0");
+		for (int i = 1; i < n - 1; i++) {
+			nfa.addState("s" + i);
+		}
+		nfa.addFinalState("s" + (n - 1));
+		for (int i = 0; i < n; i++) {
+			nfa.addTransition("s" + i, 'a', "s" + i);
+			if (i + 1 < n) {
+				nfa.addTransition("s" + i, 'e', "s" + (i + 1));
+			}
+		}
+		return nfa;
+	}
+
+	/**
+	 * A cycle of n states joined by e transitions, where each state also
+	 * loops on a, and only the last one is final. Every state has the
+	 * whole cycle as its closure, each starting from a different state.
+	 * @param int n - the number of states
+	 * @return NFA - the machine, with states c0 to c(n-1)
+	 */
+	public static NFA epsilonCycle(int n) {
+		NFA nfa = new NFA();
+		nfa.addStartState("c0");
+		for (int i = 1; i < n - 1; i++) {
+			nfa.addState("c" + i);
+		}
+		nfa.addFinalState("c" + (n - 1));
+		for (int i = 0; i < n; i++) {
+			nfa.addTransition("c" + i, 'a', "c" + i);
+			nfa.addTransition("c" + i, 'e', "c" + (i + 1) % n);
+		}
+		return nfa;
+	}
+
+	/**
+	 * A random NFA over the symbols 0 and 1 with the given number of
+	 * transitions per state and symbol, plus some e transitions
+	 * @param int n - the number of states
+	 * @param int degree - transitions per state and symbol
+	 * @param long seed - seed for the random choices
+	 * @return NFA - the machine, with states r0 to r(n-1)
+	 */
+	public static NFA denseRandom(int n, int degree, long seed) {
+		return random(n, new char[] {'0', '1'}, degree, seed);
+	}
+
+	/**
+	 * A random NFA over k symbols, one transition per state and symbol,
+	 * plus some e transitions. The symbols start at U+0100 so none is e.
+	 * @param int n - the number of states
+	 * @param int k - the alphabet size
+	 * @param long seed - seed for the random choices
+	 * @return NFA - the machine, with states r0 to r(n-1)
+	 */
+	public static NFA largeAlphabet(int n, int k, long seed) {
+		char[] abc = new char[k];
+		for (int i = 0; i < k; i++) {
+			abc[i] = (char) (0x100 + i);
+		}
+		return random(n, abc, 1, seed);
+	}
+
+	/**
+	 * Random strings over an alphabet
+	 * @param char[] abc - the symbols to use
+	 * @param int count - how many strings
+	 * @param int length - the length of each string
+	 * @param long seed - seed for the random choices
+	 * @return String[] - the strings
+	 */
+	public static String[] strings(char[] abc, int count, int length, long seed) {
+		Random r = new Random(seed);
+		String[] ret = new String[count];
+		char[] buf = new char[length];
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < length; j++) {
+				buf[j] = abc[r.nextInt(abc.length)];
+			}
+			ret[i] = new String(buf);
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes a random machine in the NFADriver file format. States are
+	 * the capital letters, since the format only has one letter names.
+	 * @param int transitions - the length of the transition line in transitions
+	 * @param int tests - the number of test strings after it
+	 * @param long seed - seed for the random choices
+	 * @return String - the file content
+	 */
+	public static String driverFile(int transitions, int tests, long seed) {
+		String names = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+		Random r = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append(names.charAt(names.length() - 1)).append('\n');
+		sb.append(names.charAt(0)).append('\n');
+		for (int i = 1; i < names.length() - 1; i++) {
+			sb.append(names.charAt(i)).append(' ');
+		}
+		sb.append('\n');
+		String symbols = "01e";
+		for (int i = 0; i < transitions; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(names.charAt(r.nextInt(names.length())))
+					.append(symbols.charAt(r.nextInt(symbols.length())))
+					.append(names.charAt(r.nextInt(names.length())));
+		}
+		sb.append('\n');
+		for (String s : strings(new char[] {'0', '1'}, tests, 16, seed)) {
+			sb.append(s).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static NFA random(int n, char[] abc, int degree, long seed) {
+		Random r = new Random(seed);
+		NFA nfa = new NFA();
+		nfa.addStartState("r0");
+		for (int i = 1; i < n; i++) {
+			if (r.nextInt(4) == 0) {
+				nfa.addFinalState("r" + i);
+			} else {
+				nfa.addState("r" + i);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			for (char c : abc) {
+				for (int d = 0; d < degree; d++) {
+					nfa.addTransition("r" + i, c, "r" + r.nextInt(n));
+				}
+			}
+			if (r.nextInt(8) == 0) {
+				nfa.addTransition("r" + i, 'e', "r" + r.nextInt(n));
+			}
+		}
+		return nfa;
+	}
+}
@@ -0,0 +1,371 @@
+package fa.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An immutable, table driven copy of a DFA for fast matching.
+ * States are numbered in the order of the DFA's state set and
+ * the transition function is one flat int array indexed by
+ * state * width + column, where the column of a symbol is found
+ * through an array indexed by the symbol itself. Symbols that go to
+ * the same state from every state are one equivalence class and
+ * share a column, so the table is only as wide as the number of
+ * classes rather than the alphabet. Missing transitions
+ * are stored as -1 and reject. Final states are kept as a bitset.
+ * Nothing changes after construction, so one instance can be
+ * shared by any number of threads.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class CompiledDFA {
+
+	//the alphabet in the DFA's order
+	private final char[] alphabet;
+	//columnOf[c] = column of the class of symbol c in the table, -1 if c is not in the alphabet
+	private final int[] columnOf;
+	//number of columns in the table
+	private final int width;
+	//table[state * width + column] = next state, -1 if there is none
+	private final int[] table;
+	//bit s is set if state s is final
+	private final long[] finals;
+	private final int start;
+	private final int stateCount;
+	//the state names, null if they were not kept
+	private final String[] names;
+
+	/**
+	 * Creates the compiled DFA out of its parts, which it takes ownership of
+	 * @param alphabet - the symbols in order
+	 * @param columnOf - the column of each symbol, indexed by symbol
+	 * @param width - the number of columns
+	 * @param table - the transition table
+	 * @param finals - the final state bitset
+	 * @param start - the start state
+	 * @param stateCount - the number of states
+	 * @param names - the state names, or null to number them
+	 */
+	CompiledDFA(char[] alphabet, int[] columnOf, int width, int[] table,
+			long[] finals, int start, int stateCount, String[] names){
+		this.alphabet = alphabet;
+		this.columnOf = columnOf;
+		this.width = width;
+		this.table = table;
+		this.finals = finals;
+		this.start = start;
+		this.stateCount = stateCount;
+		this.names = names;
+	}
+
+	/**
+	 * Compiles the given DFA, which is not changed
+	 * @param dfa - the DFA, it must have a start state
+	 * @return the compiled copy
+	 */
+	static CompiledDFA compile(DFA dfa){
+		if(dfa.getStartState() == null){
+			throw new IllegalStateException("The DFA has no start state");
+		}
+		Set<DFAState> states = dfa.getStates();
+		Set<Character> abc = dfa.getABC();
+		char[] alphabet = new char[abc.size()];
+		int max = -1;
+		int i = 0;
+		for(char c : abc){
+			alphabet[i++] = c;
+			max = Math.max(max, c);
+		}
+		Map<DFAState, Integer> ids = new HashMap<DFAState, Integer>();
+		String[] names = new String[states.size()];
+		long[] finals = new long[(names.length + 63) >>> 6];
+		for(DFAState s : states){
+			int id = ids.size();
+			ids.put(s, id);
+			names[id] = s.getName();
+			if(s.isFinal()){
+				finals[id >>> 6] |= 1L << id;
+			}
+		}
+		//targets[symbol][state] = next state, -1 if there is none
+		int[][] targets = new int[alphabet.length][names.length];
+		for(DFAState s : states){
+			int id = ids.get(s);
+			for(int sym = 0; sym < alphabet.length; sym++){
+				DFAState to = s.getToIfPresent(alphabet[sym]);
+				targets[sym][id] = to == null ? -1 : ids.get(to);
+			}
+		}
+		//symbols with equal target columns fall into the same class
+		int[] columnOf = new int[max + 1];
+		Arrays.fill(columnOf, -1);
+		Map<Column, Integer> classes = new HashMap<Column, Integer>();
+		List<int[]> representatives = new ArrayList<int[]>();
+		for(int sym = 0; sym < alphabet.length; sym++){
+			Column key = new Column(targets[sym]);
+			Integer cls = classes.get(key);
+			if(cls == null){
+				cls = representatives.size();
+				classes.put(key, cls);
+				representatives.add(targets[sym]);
+			}
+			columnOf[alphabet[sym]] = cls;
+		}
+		int width = representatives.size();
+		int[] table = new int[names.length * width];
+		for(int cls = 0; cls < width; cls++){
+			int[] column = representatives.get(cls);
+			for(int s = 0; s < names.length; s++){
+				table[s * width + cls] = column[s];
+			}
+		}
+		return new CompiledDFA(alphabet, columnOf, width, table, finals,
+				ids.get(dfa.getStartState()), names.length, names);
+	}
+
+	/**
+	 * A symbol's targets from every state, compared by content
+	 */
+	private static final class Column {
+		private final int[] targets;
+		private final int hash;
+
+		private Column(int[] targets){
+			this.targets = targets;
+			hash = Arrays.hashCode(targets);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			return o instanceof Column && ((Column) o).hash == hash
+					&& Arrays.equals(((Column) o).targets, targets);
+		}
+
+		@Override
+		public int hashCode(){
+			return hash;
+		}
+	}
+
+	/**
+	 * Simulates the DFA on the input without allocating. As with
+	 * DFA.accepts, the single symbol e stands for the empty string.
+	 * @param s - the input
+	 * @return true if s is in the language of the DFA and false otherwise
+	 */
+	public boolean accepts(CharSequence s){
+		int len = s.length();
+		if(len == 1 && s.charAt(0) == 'e'){
+			len = 0;
+		}
+		int state = start;
+		for(int i = 0; i < len && state >= 0; i++){
+			state = step(state, s.charAt(i));
+		}
+		return state >= 0 && isFinal(state);
+	}
+
+	/**
+	 * Classifies a batch of inputs on the common fork/join pool
+	 * @param inputs - the inputs, where e alone is the empty string
+	 * @return result[i] is true if inputs.get(i) is accepted
+	 */
+	public boolean[] acceptsAll(List<? extends CharSequence> inputs){
+		return acceptsAll(inputs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Classifies a batch of inputs, splitting the list across the pool's
+	 * threads. The compiled DFA is immutable so every thread shares it.
+	 * @param inputs - the inputs, where e alone is the empty string
+	 * @param pool - the pool to run on
+	 * @return result[i] is true if inputs.get(i) is accepted
+	 */
+	public boolean[] acceptsAll(List<? extends CharSequence> inputs, ForkJoinPool pool){
+		//the tasks index into the list, so linked lists are copied first
+		List<? extends CharSequence> list = inputs instanceof RandomAccess
+				? inputs : new ArrayList<CharSequence>(inputs);
+		boolean[] ret = new boolean[list.size()];
+		MatchEvent event = new MatchEvent();
+		event.begin();
+		pool.invoke(new BatchTask(list, ret, 0, ret.length));
+		event.end();
+		if(event.shouldCommit()){
+			event.operation = "acceptsAll";
+			event.states = stateCount;
+			event.inputs = ret.length;
+			for(int i = 0; i < ret.length; i++){
+				event.accepted += ret[i] ? 1 : 0;
+				event.symbols += list.get(i).length();
+			}
+			event.commit();
+		}
+		return ret;
+	}
+
+	/**
+	 * Classifies a range of a batch, splitting it while it is large
+	 */
+	private final class BatchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		//inputs handled by one task without splitting further
+		private static final int CHUNK = 1024;
+		private final List<? extends CharSequence> inputs;
+		private final boolean[] results;
+		private final int lo;
+		private final int hi;
+
+		private BatchTask(List<? extends CharSequence> inputs, boolean[] results, int lo, int hi){
+			this.inputs = inputs;
+			this.results = results;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute(){
+			if(hi - lo > CHUNK){
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new BatchTask(inputs, results, lo, mid),
+						new BatchTask(inputs, results, mid, hi));
+				return;
+			}
+			for(int i = lo; i < hi; i++){
+				results[i] = accepts(inputs.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Follows one transition
+	 * @param state - the current state, must not be -1
+	 * @param c - the symbol
+	 * @return the next state, or -1 if there is no transition on c
+	 */
+	public int step(int state, char c){
+		int col = c < columnOf.length ? columnOf[c] : -1;
+		return col < 0 ? -1 : table[state * width + col];
+	}
+
+	/**
+	 * @param state - a state number
+	 * @return true if the state is final
+	 */
+	public boolean isFinal(int state){
+		return (finals[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * @return the start state number
+	 */
+	public int getStartState(){
+		return start;
+	}
+
+	/**
+	 * @return the number of states, which are numbered from 0
+	 */
+	public int getStateCount(){
+		return stateCount;
+	}
+
+	/**
+	 * @return the number of symbol classes, which is the width of the table
+	 */
+	public int getClassCount(){
+		return width;
+	}
+
+	/**
+	 * Gets the class of a symbol. Symbols of the same class lead to
+	 * the same state from every state.
+	 * @param c - the symbol
+	 * @return its class, or -1 if c is not in the alphabet
+	 */
+	public int getSymbolClass(char c){
+		return column(c);
+	}
+
+	/**
+	 * @param state - a state number
+	 * @return the name the state had in the DFA, or the state number
+	 * if the names were not kept
+	 */
+	public String getName(int state){
+		return names == null ? String.valueOf(state) : names[state];
+	}
+
+	/**
+	 * @return a copy of the alphabet, in the DFA's order
+	 */
+	public char[] getABC(){
+		return alphabet.clone();
+	}
+
+	/**
+	 * Builds an ordinary DFA with the same states, names and transitions
+	 * @return the DFA
+	 */
+	public DFA toDFA(){
+		DFA dfa = new DFA();
+		for(int s = 0; s < getStateCount(); s++){
+			if(isFinal(s)){
+				dfa.addFinalState(getName(s));
+			} else {
+				dfa.addState(getName(s));
+			}
+		}
+		dfa.setStartState(getName(start));
+		for(int s = 0; s < getStateCount(); s++){
+			for(char c : alphabet){
+				int to = step(s, c);
+				if(to >= 0){
+					dfa.addTransition(getName(s), c, getName(to));
+				}
+			}
+		}
+		return dfa;
+	}
+
+	/**
+	 * @param c - a symbol
+	 * @return the table column of the symbol, -1 if it is not in the alphabet
+	 */
+	int column(char c){
+		return c < columnOf.length ? columnOf[c] : -1;
+	}
+
+	/**
+	 * @return the number of table columns
+	 */
+	int width(){
+		return width;
+	}
+
+	/**
+	 * @return the transition table, must not be modified
+	 */
+	int[] table(){
+		return table;
+	}
+
+	/**
+	 * @return the final state bitset, must not be modified
+	 */
+	long[] finals(){
+		return finals;
+	}
+
+	/**
+	 * @return the state names, null if they were not kept, must not be modified
+	 */
+	String[] names(){
+		return names;
+	}
+}
@@ -1,8 +1,14 @@
 package fa.dfa;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
+import fa.Transition;
+
 /**
  * Implementation of DFA class to be used
  * in p1p2
@@ -11,11 +17,14 @@ import java.util.Set;
  */
 public class DFA implements DFAInterface{
 	private Set<DFAState> states;
+	//states by name, so lookups don't walk the whole set
+	private Map<String, DFAState> byName;
 	private DFAState start;
 	private Set<Character> ordAbc;
 
 	public DFA(){
 		states = new LinkedHashSet<DFAState>();
+		byName = new HashMap<String, DFAState>();
 		ordAbc = new LinkedHashSet<Character>();
 	}
 
@@ -61,8 +70,47 @@ public class DFA implements DFAInterface{
 		}
 	}
 
+	/**
+	 * Makes an existing state the start state, without the warning
+	 * addStartState prints for names that are already taken, so a
+	 * final start state can be added with addFinalState first
+	 * @param name - the label of the state
+	 * @throws IllegalArgumentException if there is no state with that name
+	 */
+	public void setStartState(String name){
+		DFAState s = checkIfExists(name);
+		if(s == null){
+			throw new IllegalArgumentException("No DFA state exists with name " + name);
+		}
+		start = s;
+	}
+
+	/**
+	 * Looks a state up by name
+	 * @param name - the label of the state
+	 * @return the state, or null if there is none with that name
+	 */
+	DFAState getState(String name){
+		return checkIfExists(name);
+	}
+
 	private void addState(DFAState s){
 		states.add(s);
+		byName.put(s.getName(), s);
+	}
+
+	@Override
+	public void addStates(Iterable<String> names){
+		for(String name : names){
+			addState(name);
+		}
+	}
+
+	@Override
+	public void addFinalStates(Iterable<String> names){
+		for(String name : names){
+			addFinalState(name);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -86,20 +134,30 @@ public class DFA implements DFAInterface{
 		}
 	}
 
+	@Override
+	public void addTransitions(Iterable<? extends Transition> transitions){
+		for(Transition t : transitions){
+			addTransition(t.getFromState(), t.getOnSymb(), t.getToState());
+		}
+	}
+
+	@Override
+	public void addTransitions(String[] fromStates, char[] onSymbs, String[] toStates){
+		if(fromStates.length != onSymbs.length || onSymbs.length != toStates.length){
+			throw new IllegalArgumentException("Transition arrays have different lengths");
+		}
+		for(int i = 0; i < onSymbs.length; i++){
+			addTransition(fromStates[i], onSymbs[i], toStates[i]);
+		}
+	}
+
 	/**
 	 * Check if a state with such name already exists
 	 * @param name
 	 * @return null if no state exist, or DFAState object otherwise.
 	 */
 	private DFAState checkIfExists(String name){
-		DFAState ret = null;
-		for(DFAState s : states){
-			if(s.getName().equals(name)){
-				ret = s;
-				break;
-			}
-		}
-		return ret;
+		return byName.get(name);
 	}
 
 	/** (non-Javadoc)
@@ -107,41 +165,14 @@ public class DFA implements DFAInterface{
 	 **/
 	@Override
 	public String toString(){
-
-		String s = "Q = { ";
-		String fStates = "F = { ";
-		for(DFAState state : states){
-			s += state.toString();
-			s +=" ";
-			if(state.isFinal()){
-				fStates +=state.toString();
-				fStates += " ";
-			}
-		}
-		s += "}\n";
-		fStates += "}\n";
-		s += "Sigma = { ";
-		for(char c : ordAbc){
-			s += c + " ";
-		}
-		s += "}\n";
-		//create transition table
-		s += "delta =\n"+String.format("%10s", "");;
-		for(char c : ordAbc){
-			s += String.format("%10s", c);
-		}
-		s+="\n";
-		for(DFAState state : states){
-			s += String.format("%10s",state.toString());
-			for(char c : ordAbc){
-				s += String.format("%10s", state.getTo(c).toString());
-			}
-			s+="\n";
+		StringBuilder s = new StringBuilder();
+		try {
+			DFAWriter.write(this, s);
+		} catch (IOException e) {
+			//a StringBuilder never throws
+			throw new UncheckedIOException(e);
 		}
-		//start state
-		s += "q0 = " + start + "\n";
-		s += fStates;
-		return s;
+		return s.toString();
 	}
 
 	@Override
@@ -161,6 +192,63 @@ public class DFA implements DFAInterface{
 		return ret;
 	}
 
+	/**
+	 * Builds the minimal DFA for the same language with Hopcroft's
+	 * algorithm. This DFA is not changed.
+	 * @return the minimal DFA along with the mapping from old to new states
+	 */
+	public Minimization minimize() {
+		return Minimization.of(this);
+	}
+
+	/**
+	 * Compiles the DFA into an immutable transition table for fast matching.
+	 * Later changes to this DFA are not seen by the compiled copy.
+	 * @return the compiled DFA
+	 */
+	public CompiledDFA compile() {
+		return CompiledDFA.compile(this);
+	}
+
+	/**
+	 * Builds the DFA for the strings both this DFA and the other accept.
+	 * Only the pairs of states reachable from the start pair are made.
+	 * Neither DFA is changed.
+	 * @param other - the other DFA
+	 * @return the product DFA, total over both alphabets
+	 */
+	public DFA intersect(DFA other) {
+		return Product.of(this, other, SetOperation.INTERSECTION);
+	}
+
+	/**
+	 * Builds the DFA for the strings this DFA or the other accepts
+	 * @param other - the other DFA
+	 * @return the product DFA, total over both alphabets
+	 */
+	public DFA union(DFA other) {
+		return Product.of(this, other, SetOperation.UNION);
+	}
+
+	/**
+	 * Builds the DFA for the strings this DFA accepts and the other doesn't
+	 * @param other - the other DFA
+	 * @return the product DFA, total over both alphabets
+	 */
+	public DFA difference(DFA other) {
+		return Product.of(this, other, SetOperation.DIFFERENCE);
+	}
+
+	/**
+	 * Builds the DFA for the strings over this DFA's alphabet that it
+	 * rejects. Missing transitions are first sent to a new dead state,
+	 * named dead unless that name is taken, so the DFA is total.
+	 * @return the complement DFA
+	 */
+	public DFA complement() {
+		return Product.complement(this);
+	}
+
 	@Override
 	public Set<DFAState> getStates() {
 		return states;
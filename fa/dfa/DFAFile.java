@@ -0,0 +1,234 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Saves compiled DFAs to a compact binary file and loads them back,
+ * so a converted machine can be reused without running the subset
+ * construction again. All numbers are big endian:
+ * <pre>
+ * int    magic 0x43444641 ("CDFA") and int format version
+ * int    state count, start state, alphabet size, table width
+ * char[] alphabet, then int[] the table column of each symbol
+ * int[]  transition table, state count * width entries, -1 for none
+ * long[] final state bitset, (state count + 63) / 64 words
+ * int    1 if state names follow, else 0
+ *        then for each state an int byte length and its UTF-8 name
+ * </pre>
+ * Both directions memory map the file, and loading copies each
+ * section out of the mapped buffer with a single bulk get.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFAFile {
+
+	private static final int MAGIC = 0x43444641;
+	private static final int VERSION = 1;
+
+	private DFAFile(){
+	}
+
+	/**
+	 * Writes a compiled DFA to a file, replacing what was there
+	 * @param dfa - the DFA
+	 * @param file - the file to write
+	 * @param withNames - whether the state names are kept
+	 * @throws IOException if the file can't be written or would be over 2GB
+	 */
+	public static void save(CompiledDFA dfa, Path file, boolean withNames) throws IOException{
+		char[] abc = dfa.getABC();
+		int[] table = dfa.table();
+		long[] finals = dfa.finals();
+		byte[][] names = null;
+		long size = 4L * 6 + 2L * abc.length + 4L * abc.length + 4L * table.length
+				+ 8L * finals.length + 4;
+		if(withNames){
+			names = new byte[dfa.getStateCount()][];
+			for(int s = 0; s < names.length; s++){
+				names[s] = dfa.getName(s).getBytes(StandardCharsets.UTF_8);
+				size += 4 + names[s].length;
+			}
+		}
+		if(size > Integer.MAX_VALUE){
+			throw new IOException("The DFA is too large to save: " + size + " bytes");
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try{
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			out.putInt(MAGIC).putInt(VERSION);
+			out.putInt(dfa.getStateCount()).putInt(dfa.getStartState())
+					.putInt(abc.length).putInt(dfa.width());
+			out.asCharBuffer().put(abc);
+			out.position(out.position() + 2 * abc.length);
+			for(char c : abc){
+				out.putInt(dfa.column(c));
+			}
+			out.asIntBuffer().put(table);
+			out.position(out.position() + 4 * table.length);
+			out.asLongBuffer().put(finals);
+			out.position(out.position() + 8 * finals.length);
+			out.putInt(withNames ? 1 : 0);
+			if(withNames){
+				for(byte[] name : names){
+					out.putInt(name.length).put(name);
+				}
+			}
+			out.force();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Loads a compiled DFA written by save
+	 * @param file - the file to read
+	 * @return the DFA
+	 * @throws IOException if the file can't be read or is not a saved DFA
+	 */
+	public static CompiledDFA load(Path file) throws IOException{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try{
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return read(in);
+		} catch(RuntimeException e){
+			//a truncated or garbled file shows up as a buffer or array error
+			throw new IOException("Malformed DFA file " + file, e);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Reads and checks a saved DFA, so a damaged file is reported
+	 * here instead of failing later inside CompiledDFA
+	 * @param in - the file's bytes
+	 * @return the DFA
+	 * @throws IOException naming the offset of the first bad value
+	 */
+	private static CompiledDFA read(ByteBuffer in) throws IOException{
+		require(in, 8, "header");
+		if(in.getInt() != MAGIC){
+			throw new IOException("Not a DFA file");
+		}
+		int version = in.getInt();
+		if(version != VERSION){
+			throw new IOException("Unsupported DFA file version " + version);
+		}
+		require(in, 16, "header");
+		int at = in.position();
+		int stateCount = in.getInt();
+		int start = in.getInt();
+		int abcSize = in.getInt();
+		int width = in.getInt();
+		if(stateCount < 0 || abcSize < 0 || width < 0){
+			throw malformed("Negative size in the header", at);
+		}
+		if(start < 0 || start >= stateCount){
+			throw malformed("Start state " + start + " is not one of the " + stateCount + " states", at + 4);
+		}
+		if(width > abcSize){
+			throw malformed("Table width " + width + " is more than the " + abcSize + " symbols", at + 12);
+		}
+		long cells = (long) stateCount * width;
+		if(cells > Integer.MAX_VALUE){
+			throw malformed("Table of " + stateCount + " * " + width + " entries is too large", at);
+		}
+		require(in, 6L * abcSize + 4 * cells + 8L * ((stateCount + 63) >>> 6) + 4, "tables");
+		at = in.position();
+		char[] abc = new char[abcSize];
+		in.asCharBuffer().get(abc);
+		in.position(in.position() + 2 * abcSize);
+		int max = -1;
+		for(char c : abc){
+			max = Math.max(max, c);
+		}
+		int[] columnOf = new int[max + 1];
+		Arrays.fill(columnOf, -1);
+		for(int i = 0; i < abcSize; i++){
+			if(columnOf[abc[i]] >= 0){
+				throw malformed("Symbol " + abc[i] + " is in the alphabet twice", at + 2 * i);
+			}
+			columnOf[abc[i]] = width;
+		}
+		//every column must belong to at least one symbol
+		boolean[] used = new boolean[width];
+		at = in.position();
+		for(char c : abc){
+			int col = in.getInt();
+			if(col < 0 || col >= width){
+				throw malformed("Column " + col + " of symbol " + c + " is not below the width " + width,
+						in.position() - 4);
+			}
+			columnOf[c] = col;
+			used[col] = true;
+		}
+		for(int col = 0; col < width; col++){
+			if(!used[col]){
+				throw malformed("Column " + col + " has no symbol", at);
+			}
+		}
+		at = in.position();
+		int[] table = new int[(int) cells];
+		in.asIntBuffer().get(table);
+		in.position(in.position() + 4 * table.length);
+		for(int i = 0; i < table.length; i++){
+			if(table[i] < -1 || table[i] >= stateCount){
+				throw malformed("Transition to " + table[i] + " is not one of the " + stateCount + " states",
+						at + 4 * i);
+			}
+		}
+		long[] finals = new long[(stateCount + 63) >>> 6];
+		in.asLongBuffer().get(finals);
+		in.position(in.position() + 8 * finals.length);
+		String[] names = null;
+		at = in.position();
+		int flag = in.getInt();
+		if(flag != 0 && flag != 1){
+			throw malformed("Bad state name flag " + flag, at);
+		}
+		if(flag == 1){
+			names = new String[stateCount];
+			byte[] bytes = new byte[64];
+			for(int s = 0; s < stateCount; s++){
+				require(in, 4, "name length");
+				at = in.position();
+				int len = in.getInt();
+				if(len < 0 || len > in.remaining()){
+					throw malformed("Name length " + len + " of state " + s + " runs past the end", at);
+				}
+				if(len > bytes.length){
+					bytes = new byte[Math.max(len, bytes.length * 2)];
+				}
+				in.get(bytes, 0, len);
+				names[s] = new String(bytes, 0, len, StandardCharsets.UTF_8);
+			}
+		}
+		return new CompiledDFA(abc, columnOf, width, table, finals, start, stateCount, names);
+	}
+
+	/**
+	 * Checks that enough bytes are left for the next section
+	 * @param in - the file's bytes
+	 * @param bytes - how many the section needs
+	 * @param section - what the section is, for the message
+	 * @throws IOException if the file ends too soon
+	 */
+	private static void require(ByteBuffer in, long bytes, String section) throws IOException{
+		if(bytes > in.remaining()){
+			throw malformed("File ends in the " + section + ", " + bytes + " bytes needed but "
+					+ in.remaining() + " left", in.position());
+		}
+	}
+
+	private static IOException malformed(String message, int offset){
+		return new IOException(message + " at offset " + offset);
+	}
+}
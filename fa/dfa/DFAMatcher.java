@@ -0,0 +1,252 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A resumable run of a compiled DFA. The input is fed in chunks
+ * of any size and the matcher only remembers the current state,
+ * so inputs far larger than memory can be checked. Unlike accepts,
+ * chunks are read literally and e is an ordinary symbol here.
+ * Bytes are decoded with the charset the matcher was made with,
+ * ISO-8859-1 unless another is given, and a character split across
+ * two byte chunks is put together again. Bytes that are not valid
+ * in that charset are an error rather than being matched as
+ * whatever characters they happen to map to.
+ * A matcher is not safe to use from several threads, but any
+ * number of matchers can share one CompiledDFA.
+ * @author Ben Harper and Andrew Haddon
+ */
+public class DFAMatcher {
+
+	//bytes of a file mapped at once
+	private static final long MAP_SIZE = 1L << 30;
+
+	//characters decoded at once
+	private static final int DECODE_SIZE = 8192;
+
+	private final CompiledDFA dfa;
+	//the current state, -1 once a transition was missing
+	private int state;
+	private long position;
+	//null when bytes are read as ISO-8859-1 characters directly
+	private final CharsetDecoder decoder;
+	//the bytes of a character the last byte chunk ended in the middle of
+	private final ByteBuffer pending;
+	private final CharBuffer decoded;
+
+	/**
+	 * Starts a run in the start state that reads bytes as ISO-8859-1
+	 * @param dfa - the DFA to run
+	 */
+	public DFAMatcher(CompiledDFA dfa){
+		this(dfa, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Starts a run in the start state
+	 * @param dfa - the DFA to run
+	 * @param charset - the charset byte chunks are decoded with
+	 */
+	public DFAMatcher(CompiledDFA dfa, Charset charset){
+		this.dfa = dfa;
+		if(charset.equals(StandardCharsets.ISO_8859_1)){
+			decoder = null;
+			pending = null;
+			decoded = null;
+		} else {
+			decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT);
+			pending = ByteBuffer.allocate(16);
+			decoded = CharBuffer.allocate(DECODE_SIZE);
+		}
+		reset();
+	}
+
+	/**
+	 * Goes back to the start state, as if nothing was fed
+	 */
+	public void reset(){
+		state = dfa.getStartState();
+		position = 0;
+		if(decoder != null){
+			decoder.reset();
+			pending.clear();
+		}
+	}
+
+	/**
+	 * Feeds the next chunk of input
+	 * @param chunk - the characters, which are not changed
+	 * @return this matcher
+	 */
+	public DFAMatcher feed(CharSequence chunk){
+		int s = state;
+		int len = chunk.length();
+		for(int i = 0; i < len && s >= 0; i++){
+			s = dfa.step(s, chunk.charAt(i));
+		}
+		state = s;
+		position += len;
+		return this;
+	}
+
+	/**
+	 * Feeds the remaining characters of a buffer, moving its position to its limit
+	 * @param chunk - the characters
+	 * @return this matcher
+	 */
+	public DFAMatcher feed(CharBuffer chunk){
+		int s = state;
+		int end = chunk.limit();
+		for(int i = chunk.position(); i < end && s >= 0; i++){
+			s = dfa.step(s, chunk.get(i));
+		}
+		position += chunk.remaining();
+		chunk.position(end);
+		state = s;
+		return this;
+	}
+
+	/**
+	 * Feeds the remaining bytes of a buffer, moving its position to its limit.
+	 * A character the buffer ends in the middle of is finished by the next one.
+	 * @param chunk - the bytes, in the matcher's charset
+	 * @return this matcher
+	 * @throws IllegalArgumentException if the bytes are not valid in the charset
+	 */
+	public DFAMatcher feed(ByteBuffer chunk){
+		if(decoder != null){
+			//finishes the character the last chunk ended in first
+			while(pending.position() > 0 && chunk.hasRemaining()){
+				pending.put(chunk.get());
+				pending.flip();
+				decode(pending);
+				pending.compact();
+			}
+			decode(chunk);
+			pending.put(chunk);
+			return this;
+		}
+		int s = state;
+		int end = chunk.limit();
+		for(int i = chunk.position(); i < end && s >= 0; i++){
+			s = dfa.step(s, (char) (chunk.get(i) & 0xFF));
+		}
+		position += chunk.remaining();
+		chunk.position(end);
+		state = s;
+		return this;
+	}
+
+	/**
+	 * Decodes as much of the bytes as makes whole characters and feeds them
+	 * @param in - the bytes, left at the start of an unfinished character
+	 */
+	private void decode(ByteBuffer in){
+		while(true){
+			CoderResult result = decoder.decode(in, decoded, false);
+			decoded.flip();
+			feed(decoded);
+			decoded.clear();
+			if(result.isError()){
+				throw new IllegalArgumentException("The input is not valid " + decoder.charset()
+						+ " after " + position + " characters");
+			}
+			if(result.isUnderflow()){
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the input fed so far is in the language of the DFA,
+	 * which it never is while the bytes fed end in the middle of a character
+	 */
+	public boolean isAccepting(){
+		return state >= 0 && dfa.isFinal(state) && (pending == null || pending.position() == 0);
+	}
+
+	/**
+	 * @return true if a missing transition was taken, so no more input can be accepted
+	 */
+	public boolean isDead(){
+		return state < 0;
+	}
+
+	/**
+	 * @return the number of characters fed since the last reset
+	 */
+	public long getPosition(){
+		return position;
+	}
+
+	/**
+	 * Checks a whole file against a DFA, reading each byte as an
+	 * ISO-8859-1 character. See matchesFile(CompiledDFA, Path, Charset).
+	 * @param dfa - the DFA to run
+	 * @param file - the file
+	 * @return true if the content of the file is accepted
+	 * @throws IOException if the file can't be read
+	 */
+	public static boolean matchesFile(CompiledDFA dfa, Path file) throws IOException{
+		return matchesFile(dfa, file, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Checks a whole file against a DFA by memory mapping it piece by piece
+	 * and decoding it with a charset. The content is never copied into a
+	 * String, and the file is not read past the point where the run dies.
+	 * @param dfa - the DFA to run
+	 * @param file - the file
+	 * @param charset - the charset the file is written in
+	 * @return true if the content of the file is accepted
+	 * @throws IOException if the file can't be read or is not valid in the charset
+	 */
+	public static boolean matchesFile(CompiledDFA dfa, Path file, Charset charset) throws IOException{
+		DFAMatcher matcher = new DFAMatcher(dfa, charset);
+		MatchEvent event = new MatchEvent();
+		event.begin();
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size;
+		try{
+			size = channel.size();
+			for(long offset = 0; offset < size && !matcher.isDead(); offset += MAP_SIZE){
+				MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+						offset, Math.min(MAP_SIZE, size - offset));
+				matcher.feed(chunk);
+			}
+			if(!matcher.isDead() && matcher.pending != null && matcher.pending.position() > 0){
+				throw new IOException("Can't read " + file + ": it ends in the middle of a "
+						+ charset + " character");
+			}
+		} catch(IllegalArgumentException e){
+			throw new IOException("Can't read " + file + ": " + e.getMessage(), e);
+		} finally {
+			channel.close();
+		}
+		boolean ret = matcher.isAccepting();
+		event.end();
+		if(event.shouldCommit()){
+			event.operation = "matchesFile";
+			event.states = dfa.getStateCount();
+			event.inputs = 1;
+			event.accepted = ret ? 1 : 0;
+			event.symbols = matcher.getPosition();
+			event.bytes = size;
+			event.commit();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,140 @@
+package fa.dfa;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streams the text form of a DFA to any Appendable, such as a
+ * StringBuilder or a Writer, piece by piece instead of building
+ * it up with string concatenation, so the time taken is linear in
+ * the size of the output. It can also write a Graphviz DOT graph.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFAWriter {
+
+	//width of each column of the transition table
+	private static final int COLUMN = 10;
+
+	private DFAWriter(){
+	}
+
+	/**
+	 * Writes the DFA in the format of DFAInterface.toString
+	 * @param dfa - the DFA
+	 * @param out - where to write it
+	 * @throws IOException if out can't be written to
+	 */
+	public static void write(DFA dfa, Appendable out) throws IOException{
+		out.append("Q = { ");
+		for(DFAState state : dfa.getStates()){
+			out.append(state.toString()).append(' ');
+		}
+		out.append("}\n");
+		out.append("Sigma = { ");
+		for(char c : dfa.getABC()){
+			out.append(c).append(' ');
+		}
+		out.append("}\n");
+		//create transition table
+		out.append("delta =\n");
+		pad(out, "");
+		for(char c : dfa.getABC()){
+			pad(out, String.valueOf(c));
+		}
+		out.append('\n');
+		for(DFAState state : dfa.getStates()){
+			pad(out, state.toString());
+			for(char c : dfa.getABC()){
+				pad(out, state.getTo(c).toString());
+			}
+			out.append('\n');
+		}
+		//start state
+		out.append("q0 = ").append(String.valueOf(dfa.getStartState())).append('\n');
+		out.append("F = { ");
+		for(DFAState state : dfa.getStates()){
+			if(state.isFinal()){
+				out.append(state.toString()).append(' ');
+			}
+		}
+		out.append("}\n");
+	}
+
+	/**
+	 * Writes the DFA as a Graphviz DOT digraph. Final states are double
+	 * circles, the start state has an arrow from a point, and all the
+	 * symbols that go between the same two states share one edge.
+	 * @param dfa - the DFA
+	 * @param out - where to write it
+	 * @throws IOException if out can't be written to
+	 */
+	public static void writeDot(DFA dfa, Appendable out) throws IOException{
+		out.append("digraph DFA {\n");
+		out.append("\trankdir=LR;\n");
+		out.append("\tnode [shape=circle];\n");
+		for(DFAState state : dfa.getStates()){
+			if(state.isFinal()){
+				out.append('\t');
+				quote(out, state.getName());
+				out.append(" [shape=doublecircle];\n");
+			}
+		}
+		if(dfa.getStartState() != null){
+			out.append("\t__start [shape=point];\n");
+			out.append("\t__start -> ");
+			quote(out, dfa.getStartState().getName());
+			out.append(";\n");
+		}
+		for(DFAState state : dfa.getStates()){
+			//groups the symbols by the state they lead to
+			Map<DFAState, StringBuilder> labels = new LinkedHashMap<DFAState, StringBuilder>();
+			for(char c : dfa.getABC()){
+				DFAState to = state.getToIfPresent(c);
+				if(to != null){
+					StringBuilder label = labels.get(to);
+					if(label == null){
+						labels.put(to, new StringBuilder().append(c));
+					} else {
+						label.append(',').append(c);
+					}
+				}
+			}
+			for(Map.Entry<DFAState, StringBuilder> e : labels.entrySet()){
+				out.append('\t');
+				quote(out, state.getName());
+				out.append(" -> ");
+				quote(out, e.getKey().getName());
+				out.append(" [label=");
+				quote(out, e.getValue());
+				out.append("];\n");
+			}
+		}
+		out.append("}\n");
+	}
+
+	/**
+	 * Right aligns s in a column, like String.format("%10s", s)
+	 */
+	private static void pad(Appendable out, String s) throws IOException{
+		for(int i = s.length(); i < COLUMN; i++){
+			out.append(' ');
+		}
+		out.append(s);
+	}
+
+	/**
+	 * Writes s as a DOT quoted string
+	 */
+	private static void quote(Appendable out, CharSequence s) throws IOException{
+		out.append('"');
+		for(int i = 0; i < s.length(); i++){
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\'){
+				out.append('\\');
+			}
+			out.append(c);
+		}
+		out.append('"');
+	}
+}
@@ -0,0 +1,215 @@
+package fa.dfa;
+
+import java.util.Arrays;
+
+/**
+ * An immutable DFA over Unicode code points whose transitions are
+ * labelled by intervals instead of single characters. The code points
+ * are split into disjoint intervals that every state treats alike,
+ * so a symbol is matched by a binary search over the interval starts
+ * and one lookup in a flat table indexed by state * intervals + interval.
+ * Missing transitions are stored as -1 and reject. Since symbols are
+ * code points and not chars, e is an ordinary symbol here and an empty
+ * input is the empty string.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class IntervalDFA {
+
+	//starts[i] = first code point of interval i, starting at 0
+	private final int[] starts;
+	//table[state * starts.length + interval] = next state, -1 if none
+	private final int[] table;
+	private final long[] finals;
+	private final int start;
+	private final String[] names;
+
+	/**
+	 * Makes an interval DFA out of its tables, which are copied
+	 * @param starts - the first code point of each interval, ascending and starting at 0
+	 * @param table - the next state of each state and interval, -1 for none
+	 * @param finals - finals[s] is true if state s is final
+	 * @param start - the start state
+	 * @param names - the name of each state
+	 * @throws IllegalArgumentException if the tables don't fit together
+	 */
+	public IntervalDFA(int[] starts, int[] table, boolean[] finals, int start, String[] names){
+		int n = names.length;
+		if(starts.length == 0 || starts[0] != 0){
+			throw new IllegalArgumentException("The intervals must start at code point 0");
+		}
+		for(int i = 1; i < starts.length; i++){
+			if(starts[i] <= starts[i - 1] || starts[i] > Character.MAX_CODE_POINT){
+				throw new IllegalArgumentException("Interval starts must ascend within the code points");
+			}
+		}
+		if(table.length != n * starts.length || finals.length != n){
+			throw new IllegalArgumentException("The tables don't match " + n + " states");
+		}
+		if(start < 0 || start >= n){
+			throw new IllegalArgumentException("Invalid start state " + start);
+		}
+		for(int to : table){
+			if(to < -1 || to >= n){
+				throw new IllegalArgumentException("Invalid transition to " + to);
+			}
+		}
+		this.starts = starts.clone();
+		this.table = table.clone();
+		this.finals = new long[(n + 63) >>> 6];
+		for(int s = 0; s < n; s++){
+			if(finals[s]){
+				this.finals[s >>> 6] |= 1L << s;
+			}
+		}
+		this.start = start;
+		this.names = names.clone();
+	}
+
+	/**
+	 * Runs the DFA over the code points of the input
+	 * @param s - the input
+	 * @return true if the DFA accepts it
+	 */
+	public boolean accepts(CharSequence s){
+		int state = start;
+		for(int i = 0; i < s.length(); ){
+			int cp = Character.codePointAt(s, i);
+			state = step(state, cp);
+			if(state < 0){
+				return false;
+			}
+			i += Character.charCount(cp);
+		}
+		return isFinal(state);
+	}
+
+	/**
+	 * Runs the DFA over a sequence of code points, such as bytes 0 to 255
+	 * @param codePoints - the input
+	 * @return true if the DFA accepts it
+	 */
+	public boolean accepts(int[] codePoints){
+		int state = start;
+		for(int cp : codePoints){
+			state = step(state, cp);
+			if(state < 0){
+				return false;
+			}
+		}
+		return isFinal(state);
+	}
+
+	/**
+	 * Follows one transition
+	 * @param state - the current state, must not be -1
+	 * @param codePoint - the symbol
+	 * @return the next state, or -1 if there is no transition on it
+	 */
+	public int step(int state, int codePoint){
+		if(codePoint < 0 || codePoint > Character.MAX_CODE_POINT){
+			return -1;
+		}
+		return table[state * starts.length + interval(codePoint)];
+	}
+
+	/**
+	 * @param state - a state number
+	 * @return true if the state is final
+	 */
+	public boolean isFinal(int state){
+		return (finals[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * @return the start state's number
+	 */
+	public int getStartState(){
+		return start;
+	}
+
+	/**
+	 * @return the number of states
+	 */
+	public int getStateCount(){
+		return names.length;
+	}
+
+	/**
+	 * @param state - a state number
+	 * @return the state's name
+	 */
+	public String getName(int state){
+		return names[state];
+	}
+
+	/**
+	 * @return the number of intervals the code points are split into
+	 */
+	public int getIntervalCount(){
+		return starts.length;
+	}
+
+	/**
+	 * @param interval - an interval number
+	 * @return its first code point
+	 */
+	public int getIntervalStart(int interval){
+		return starts[interval];
+	}
+
+	/**
+	 * @param interval - an interval number
+	 * @return its last code point
+	 */
+	public int getIntervalEnd(int interval){
+		return interval + 1 < starts.length ? starts[interval + 1] - 1 : Character.MAX_CODE_POINT;
+	}
+
+	/**
+	 * Finds the interval a code point is in
+	 * @param codePoint - a code point
+	 * @return the number of its interval
+	 */
+	public int interval(int codePoint){
+		int i = Arrays.binarySearch(starts, codePoint);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	/**
+	 * Lists the states, then each transition as a code point range, for example
+	 * [a] [0x61-0x7A] [b]
+	 */
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder("Q = { ");
+		for(String name : names){
+			sb.append(name).append(' ');
+		}
+		sb.append("}\ndelta =\n");
+		int k = starts.length;
+		for(int s = 0; s < names.length; s++){
+			for(int i = 0; i < k; i++){
+				int to = table[s * k + i];
+				if(to >= 0){
+					sb.append(names[s]).append(" [").append(hex(getIntervalStart(i)));
+					if(getIntervalEnd(i) != getIntervalStart(i)){
+						sb.append('-').append(hex(getIntervalEnd(i)));
+					}
+					sb.append("] ").append(names[to]).append('\n');
+				}
+			}
+		}
+		sb.append("q0 = ").append(names[start]).append('\n');
+		sb.append("F = { ");
+		for(int s = 0; s < names.length; s++){
+			if(isFinal(s)){
+				sb.append(names[s]).append(' ');
+			}
+		}
+		return sb.append("}\n").toString();
+	}
+
+	private static String hex(int cp){
+		return String.format("0x%02X", cp);
+	}
+}
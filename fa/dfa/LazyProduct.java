@@ -0,0 +1,151 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs two compiled DFAs side by side in one pass over each input,
+ * building the product states only as inputs reach them. Each pair
+ * of states is made once and remembers the transitions already
+ * followed out of it, so repeated inputs cost one table lookup per
+ * symbol like a compiled DFA. A symbol outside a machine's alphabet
+ * sends that machine to its dead state. A LazyProduct is not safe
+ * to use from several threads.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class LazyProduct {
+
+	//transition not followed yet
+	private static final int UNKNOWN = -2;
+
+	private final CompiledDFA a;
+	private final CompiledDFA b;
+	private final SetOperation op;
+	//columnOf[c] = column of symbol c, -1 if neither machine has it
+	private final int[] columnOf;
+	private final char[] symbols;
+	private final int width;
+	//the pairs in the order found, the index is the product state
+	private int[] ps;
+	private int[] qs;
+	private boolean[] finals;
+	private int count;
+	private final Map<Long, Integer> ids;
+	//next[state * width + column] = product state, -1 if dead, UNKNOWN if not followed yet
+	private int[] next;
+	private final int start;
+
+	/**
+	 * @param a - the first machine
+	 * @param b - the second machine
+	 * @param op - how the pair decides acceptance
+	 */
+	public LazyProduct(CompiledDFA a, CompiledDFA b, SetOperation op){
+		this.a = a;
+		this.b = b;
+		this.op = op;
+		StringBuilder abc = new StringBuilder().append(a.getABC());
+		for(char c : b.getABC()){
+			if(a.column(c) < 0){
+				abc.append(c);
+			}
+		}
+		symbols = abc.toString().toCharArray();
+		width = symbols.length;
+		int max = -1;
+		for(char c : symbols){
+			max = Math.max(max, c);
+		}
+		columnOf = new int[max + 1];
+		Arrays.fill(columnOf, -1);
+		for(int j = 0; j < width; j++){
+			columnOf[symbols[j]] = j;
+		}
+		ps = new int[16];
+		qs = new int[16];
+		finals = new boolean[16];
+		next = new int[16 * Math.max(width, 1)];
+		ids = new HashMap<Long, Integer>();
+		start = intern(a.getStartState(), b.getStartState());
+	}
+
+	/**
+	 * Runs both machines over the input at once. As with CompiledDFA,
+	 * the single symbol e stands for the empty string.
+	 * @param s - the input
+	 * @return true if the pair of machines accepts s under the operation
+	 */
+	public boolean accepts(CharSequence s){
+		int len = s.length();
+		if(len == 1 && s.charAt(0) == 'e'){
+			len = 0;
+		}
+		int state = start;
+		for(int i = 0; i < len && state >= 0; i++){
+			char c = s.charAt(i);
+			int col = c < columnOf.length ? columnOf[c] : -1;
+			if(col < 0){
+				//neither machine can read c
+				return false;
+			}
+			int to = next[state * width + col];
+			if(to == UNKNOWN){
+				to = follow(state, col);
+			}
+			state = to;
+		}
+		return state >= 0 && finals[state];
+	}
+
+	/**
+	 * @return the number of product states built so far
+	 */
+	public int getStateCount(){
+		return count;
+	}
+
+	/**
+	 * Computes and remembers a transition of a product state
+	 * @param state - the product state
+	 * @param col - the symbol's column
+	 * @return the next product state, or -1 if it is dead
+	 */
+	private int follow(int state, int col){
+		char c = symbols[col];
+		int p = ps[state] < 0 ? -1 : a.step(ps[state], c);
+		int q = qs[state] < 0 ? -1 : b.step(qs[state], c);
+		int to = intern(p, q);
+		next[state * width + col] = to;
+		return to;
+	}
+
+	/**
+	 * Finds the product state of a pair, making it if it is new
+	 * @param p - the first machine's state, -1 if dead
+	 * @param q - the second machine's state, -1 if dead
+	 * @return the product state, or -1 if the pair can never accept
+	 */
+	private int intern(int p, int q){
+		if(op.isDead(p, q)){
+			return -1;
+		}
+		Long key = ((long) p << 32) | (q & 0xFFFFFFFFL);
+		Integer id = ids.get(key);
+		if(id != null){
+			return id;
+		}
+		if(count == ps.length){
+			ps = Arrays.copyOf(ps, count * 2);
+			qs = Arrays.copyOf(qs, count * 2);
+			finals = Arrays.copyOf(finals, count * 2);
+			next = Arrays.copyOf(next, count * 2 * Math.max(width, 1));
+		}
+		ps[count] = p;
+		qs[count] = q;
+		finals[count] = op.accepts(p >= 0 && a.isFinal(p), q >= 0 && b.isFinal(q));
+		Arrays.fill(next, count * width, (count + 1) * width, UNKNOWN);
+		ids.put(key, count);
+		return count++;
+	}
+}
@@ -0,0 +1,41 @@
+package fa.dfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for a bulk match: a batch of inputs classified
+ * by CompiledDFA.acceptsAll, or a file run through DFAMatcher.matchesFile.
+ * Single accepts calls are too short to be worth an event each.
+ * While the event isn't enabled, matching only pays for the isEnabled check.
+ * @author Ben Harper and Andrew Haddon
+ */
+@Name("fa.DFAMatch")
+@Label("DFA Match")
+@Category("Finite Automata")
+@Description("Bulk matching of inputs against a compiled DFA")
+final class MatchEvent extends Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("DFA States")
+	int states;
+
+	@Label("Inputs")
+	long inputs;
+
+	@Label("Accepted")
+	long accepted;
+
+	@Label("Symbols Read")
+	long symbols;
+
+	@Label("File Size")
+	@DataAmount
+	long bytes;
+}
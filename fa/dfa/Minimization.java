@@ -0,0 +1,272 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of minimizing a DFA with Hopcroft's partition refinement
+ * algorithm: the minimal DFA and which of its states each reachable
+ * state of the original DFA became. States of the original that can't
+ * be reached from the start state are dropped and have no entry.
+ * Each new state is named after the first original state of its class.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class Minimization {
+
+	private final DFA dfa;
+	private final Map<DFAState, DFAState> stateMap;
+
+	private Minimization(DFA dfa, Map<DFAState, DFAState> stateMap) {
+		this.dfa = dfa;
+		this.stateMap = Collections.unmodifiableMap(stateMap);
+	}
+
+	/**
+	 * @return the minimal DFA
+	 */
+	public DFA getDFA() {
+		return dfa;
+	}
+
+	/**
+	 * @return a read only map from each reachable state of the original DFA
+	 * to the state of the minimal DFA that replaced it
+	 */
+	public Map<DFAState, DFAState> getStateMap() {
+		return stateMap;
+	}
+
+	/**
+	 * Minimizes the given DFA, which is not changed
+	 * @param orig - the DFA, it must have a start state
+	 * @return the minimal DFA and the state mapping
+	 */
+	static Minimization of(DFA orig) {
+		if (orig.getStartState() == null) {
+			throw new IllegalStateException("The DFA has no start state");
+		}
+		char[] abc = new char[orig.getABC().size()];
+		int k = 0;
+		for (char c : orig.getABC()) {
+			abc[k++] = c;
+		}
+
+		//numbers the reachable states in the order of the original state set
+		Set<DFAState> all = orig.getStates();
+		Set<DFAState> reachable = new HashSet<DFAState>();
+		reachable.add(orig.getStartState());
+		DFAState[] queue = new DFAState[all.size()];
+		queue[0] = orig.getStartState();
+		int found = 1;
+		for (int i = 0; i < found; i++) {
+			for (char c : abc) {
+				DFAState to = queue[i].getToIfPresent(c);
+				if (to != null && reachable.add(to)) {
+					queue[found++] = to;
+				}
+			}
+		}
+		DFAState[] states = new DFAState[found];
+		Map<DFAState, Integer> ids = new HashMap<DFAState, Integer>();
+		for (DFAState s : all) {
+			if (reachable.contains(s)) {
+				ids.put(s, ids.size());
+				states[ids.get(s)] = s;
+			}
+		}
+
+		//builds a total transition table, sending missing transitions to an extra sink
+		int n = found;
+		int[] delta = new int[(n + 1) * k];
+		boolean partial = false;
+		for (int s = 0; s < n; s++) {
+			for (int a = 0; a < k; a++) {
+				DFAState to = states[s].getToIfPresent(abc[a]);
+				if (to == null) {
+					partial = true;
+					delta[s * k + a] = n;
+				} else {
+					delta[s * k + a] = ids.get(to);
+				}
+			}
+		}
+		if (partial) {
+			for (int a = 0; a < k; a++) {
+				delta[n * k + a] = n;
+			}
+			n++;
+		}
+		boolean[] isFinal = new boolean[n];
+		for (int s = 0; s < found; s++) {
+			isFinal[s] = states[s].isFinal();
+		}
+
+		int[] block = refine(n, k, delta, isFinal);
+
+		//one new state per block, in the order of their first original state
+		DFA min = new DFA();
+		int[] rep = new int[n];
+		Arrays.fill(rep, -1);
+		for (int s = 0; s < found; s++) {
+			if (rep[block[s]] < 0) {
+				rep[block[s]] = s;
+				if (isFinal[s]) {
+					min.addFinalState(states[s].getName());
+				} else {
+					min.addState(states[s].getName());
+				}
+			}
+		}
+		int start = ids.get(orig.getStartState());
+		min.setStartState(states[rep[block[start]]].getName());
+		for (int b = 0; b < n; b++) {
+			int s = rep[b];
+			if (s < 0) {
+				continue;
+			}
+			for (int a = 0; a < k; a++) {
+				int to = rep[block[delta[s * k + a]]];
+				//the block holding only the added sink is left out
+				if (to >= 0) {
+					min.addTransition(states[s].getName(), abc[a], states[to].getName());
+				}
+			}
+		}
+		Map<DFAState, DFAState> stateMap = new LinkedHashMap<DFAState, DFAState>();
+		for (int s = 0; s < found; s++) {
+			stateMap.put(states[s], min.getState(states[rep[block[s]]].getName()));
+		}
+		return new Minimization(min, stateMap);
+	}
+
+	/**
+	 * Hopcroft's algorithm. Blocks are kept as ranges of one permutation
+	 * of the states, and the states of a block that are split off are
+	 * moved to the front of its range. After a split only the smaller
+	 * half is added to the worklist unless the block was already on it.
+	 * @param n - the number of states
+	 * @param k - the number of symbols
+	 * @param delta - the total transition table, delta[s * k + a]
+	 * @param isFinal - the final states
+	 * @return the block of every state, equal blocks are equivalent states
+	 */
+	private static int[] refine(int n, int k, int[] delta, boolean[] isFinal) {
+		//inverse transitions per symbol, predecessors of t on a are
+		//pred[predStart[a * (n + 1) + t] .. predStart[a * (n + 1) + t + 1])
+		int[] predStart = new int[k * (n + 1) + 1];
+		for (int s = 0; s < n; s++) {
+			for (int a = 0; a < k; a++) {
+				predStart[a * (n + 1) + delta[s * k + a] + 1]++;
+			}
+		}
+		for (int i = 1; i < predStart.length; i++) {
+			predStart[i] += predStart[i - 1];
+		}
+		int[] pred = new int[n * k];
+		int[] fill = predStart.clone();
+		for (int s = 0; s < n; s++) {
+			for (int a = 0; a < k; a++) {
+				pred[fill[a * (n + 1) + delta[s * k + a]]++] = s;
+			}
+		}
+
+		int[] elems = new int[n];
+		int[] loc = new int[n];
+		int[] block = new int[n];
+		int[] first = new int[n];
+		int[] end = new int[n];
+		int[] marked = new int[n];
+		int blocks = 0;
+		//the final states go first, then the rest
+		int pos = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			int start = pos;
+			for (int s = 0; s < n; s++) {
+				if (isFinal[s] == (pass == 0)) {
+					elems[pos] = s;
+					loc[s] = pos++;
+					block[s] = blocks;
+				}
+			}
+			if (pos > start) {
+				first[blocks] = start;
+				end[blocks++] = pos;
+			}
+		}
+
+		boolean[] inWork = new boolean[n * k];
+		int[] work = new int[n * k];
+		int top = 0;
+		//either block is enough to start with, so the smaller one is used
+		int smaller = blocks == 2 && end[1] - first[1] < end[0] - first[0] ? 1 : 0;
+		for (int a = 0; a < k; a++) {
+			work[top++] = smaller * k + a;
+			inWork[smaller * k + a] = true;
+		}
+
+		int[] splitter = new int[n];
+		int[] touched = new int[n];
+		while (top > 0) {
+			int pair = work[--top];
+			inWork[pair] = false;
+			int b = pair / k;
+			int a = pair % k;
+			//copies the splitter since marking reorders the ranges
+			int size = end[b] - first[b];
+			System.arraycopy(elems, first[b], splitter, 0, size);
+			int touchedCount = 0;
+			for (int i = 0; i < size; i++) {
+				int t = splitter[i];
+				for (int p = predStart[a * (n + 1) + t]; p < predStart[a * (n + 1) + t + 1]; p++) {
+					int s = pred[p];
+					int c = block[s];
+					int m = first[c] + marked[c];
+					if (loc[s] >= m) {
+						//moves s to the marked front of its block
+						if (marked[c] == 0) {
+							touched[touchedCount++] = c;
+						}
+						int other = elems[m];
+						elems[m] = s;
+						elems[loc[s]] = other;
+						loc[other] = loc[s];
+						loc[s] = m;
+						marked[c]++;
+					}
+				}
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				int c = touched[i];
+				int count = marked[c];
+				marked[c] = 0;
+				if (count == end[c] - first[c]) {
+					continue;
+				}
+				//the marked states become a new block
+				int nb = blocks++;
+				first[nb] = first[c];
+				end[nb] = first[c] + count;
+				first[c] = end[nb];
+				for (int j = first[nb]; j < end[nb]; j++) {
+					block[elems[j]] = nb;
+				}
+				for (int sym = 0; sym < k; sym++) {
+					int add;
+					if (inWork[c * k + sym]) {
+						add = nb;
+					} else {
+						add = end[nb] - first[nb] <= end[c] - first[c] ? nb : c;
+					}
+					work[top++] = add * k + sym;
+					inWork[add * k + sym] = true;
+				}
+			}
+		}
+		return block;
+	}
+}
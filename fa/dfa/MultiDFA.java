@@ -0,0 +1,96 @@
+package fa.dfa;
+
+import java.util.BitSet;
+
+/**
+ * A compiled DFA for many patterns at once, where every state carries
+ * the set of pattern ids it accepts. One scan of an input tells which
+ * of the patterns match it, instead of one accepts call per pattern.
+ * Like CompiledDFA it is immutable and can be shared between threads.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class MultiDFA {
+
+	private final CompiledDFA dfa;
+	//tags[state] = ids of the patterns the state accepts
+	private final BitSet[] tags;
+	private final int patterns;
+
+	/**
+	 * @param dfa - the determinized union of the patterns
+	 * @param tags - the pattern ids each state of dfa accepts, which are copied
+	 * @param patterns - the number of patterns
+	 * @throws IllegalArgumentException if there isn't one tag set per state
+	 */
+	public MultiDFA(CompiledDFA dfa, BitSet[] tags, int patterns){
+		if(tags.length != dfa.getStateCount()){
+			throw new IllegalArgumentException("Expected " + dfa.getStateCount()
+					+ " tag sets but got " + tags.length);
+		}
+		this.dfa = dfa;
+		this.tags = new BitSet[tags.length];
+		for(int s = 0; s < tags.length; s++){
+			this.tags[s] = (BitSet) tags[s].clone();
+		}
+		this.patterns = patterns;
+	}
+
+	/**
+	 * Finds every pattern that matches the whole input. As with
+	 * CompiledDFA, the single symbol e stands for the empty string.
+	 * @param s - the input
+	 * @return the ids of the matching patterns, empty if there are none
+	 */
+	public BitSet matches(CharSequence s){
+		int state = run(s);
+		return state < 0 ? new BitSet() : (BitSet) tags[state].clone();
+	}
+
+	/**
+	 * Finds the lowest numbered pattern that matches the whole input,
+	 * which is the one a lexer would pick when several match
+	 * @param s - the input
+	 * @return the pattern id, or -1 if none matches
+	 */
+	public int firstMatch(CharSequence s){
+		int state = run(s);
+		return state < 0 ? -1 : tags[state].nextSetBit(0);
+	}
+
+	/**
+	 * @param state - a state of the compiled DFA
+	 * @return the ids of the patterns it accepts
+	 */
+	public BitSet getPatterns(int state){
+		return (BitSet) tags[state].clone();
+	}
+
+	/**
+	 * @return the number of patterns
+	 */
+	public int getPatternCount(){
+		return patterns;
+	}
+
+	/**
+	 * @return the compiled DFA, which accepts the strings any pattern matches
+	 */
+	public CompiledDFA getDFA(){
+		return dfa;
+	}
+
+	/**
+	 * @return the state the input ends in, -1 if it falls off the DFA
+	 */
+	private int run(CharSequence s){
+		int len = s.length();
+		if(len == 1 && s.charAt(0) == 'e'){
+			len = 0;
+		}
+		int state = dfa.getStartState();
+		for(int i = 0; i < len && state >= 0; i++){
+			state = dfa.step(state, s.charAt(i));
+		}
+		return state;
+	}
+}
@@ -0,0 +1,257 @@
+package fa.dfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds product and complement DFAs. Both machines are compiled to
+ * tables first and the product is explored breadth first from the
+ * pair of start states, so only reachable pairs become states.
+ * A missing transition goes to a dead state, written -. Once every
+ * pair is found, the pairs that can no longer reach an accepting pair
+ * are merged into the single pair (-, -), found by searching backwards
+ * from the accepting pairs.
+ * A pair is named (p, q) after its states. Since the names of p and q
+ * may themselves hold commas, two pairs can get the same name, and
+ * the later one then gets the first number that makes it unique.
+ * The results are total over their alphabets, so DFA.accepts never
+ * runs into a missing transition on them.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class Product {
+
+	private Product(){
+	}
+
+	/**
+	 * Builds the product of two DFAs
+	 * @param a - the first DFA
+	 * @param b - the second DFA
+	 * @param op - how the pair decides acceptance
+	 * @return the product over the union of the two alphabets
+	 */
+	static DFA of(DFA a, DFA b, SetOperation op){
+		CompiledDFA x = a.compile();
+		CompiledDFA y = b.compile();
+		Set<Character> union = new LinkedHashSet<Character>(a.getABC());
+		union.addAll(b.getABC());
+		char[] abc = new char[union.size()];
+		int k = 0;
+		for(char c : union){
+			abc[k++] = c;
+		}
+		//the pairs in the order found, the index is the product state
+		int[] ps = new int[16];
+		int[] qs = new int[16];
+		Map<Long, Integer> ids = new HashMap<Long, Integer>();
+		int[] table = new int[16];
+		int p0 = x.getStartState();
+		int q0 = y.getStartState();
+		if(op.isDead(p0, q0)){
+			p0 = -1;
+			q0 = -1;
+		}
+		ids.put(key(p0, q0), 0);
+		ps[0] = p0;
+		qs[0] = q0;
+		int n = 1;
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < k; j++){
+				int p = ps[i] < 0 ? -1 : x.step(ps[i], abc[j]);
+				int q = qs[i] < 0 ? -1 : y.step(qs[i], abc[j]);
+				if(op.isDead(p, q)){
+					p = -1;
+					q = -1;
+				}
+				Integer id = ids.get(key(p, q));
+				if(id == null){
+					id = n;
+					ids.put(key(p, q), id);
+					if(n == ps.length){
+						ps = Arrays.copyOf(ps, n * 2);
+						qs = Arrays.copyOf(qs, n * 2);
+					}
+					ps[n] = p;
+					qs[n++] = q;
+				}
+				if(i * k + j >= table.length){
+					table = Arrays.copyOf(table, Math.max(i * k + j + 1, table.length * 2));
+				}
+				table[i * k + j] = id;
+			}
+		}
+		boolean[] accepting = new boolean[n];
+		for(int i = 0; i < n; i++){
+			accepting[i] = op.accepts(ps[i] >= 0 && x.isFinal(ps[i]), qs[i] >= 0 && y.isFinal(qs[i]));
+		}
+		//every dead pair becomes the first of them, the others keep their order
+		boolean[] live = live(table, n, k, accepting);
+		int[] map = new int[n];
+		int dead = -1;
+		int m = 0;
+		for(int i = 0; i < n; i++){
+			if(live[i]){
+				map[i] = m++;
+			} else {
+				if(dead < 0){
+					dead = m++;
+				}
+				map[i] = dead;
+			}
+		}
+		String[] names = new String[m];
+		boolean[] finals = new boolean[m];
+		int[] merged = new int[m * k];
+		Set<String> used = new HashSet<String>();
+		for(int i = 0; i < n; i++){
+			if(live[i] || map[i] == dead && names[dead] == null){
+				names[map[i]] = unique(used, live[i] ? "(" + name(x, ps[i]) + ", " + name(y, qs[i]) + ")" : "(-, -)");
+				finals[map[i]] = accepting[i];
+				for(int j = 0; j < k; j++){
+					merged[map[i] * k + j] = map[table[i * k + j]];
+				}
+			}
+		}
+		return build(names, finals, abc, merged, map[0]);
+	}
+
+	/**
+	 * Finds the pairs that can reach an accepting pair
+	 * @param table - the next pair of each pair and column
+	 * @param n - the number of pairs
+	 * @param k - the number of columns
+	 * @param accepting - accepting[i] is true if pair i accepts
+	 * @return live[i] is true if pair i can reach an accepting pair
+	 */
+	private static boolean[] live(int[] table, int n, int k, boolean[] accepting){
+		//the pairs leading into each pair, as one array split by offsets
+		int[] offsets = new int[n + 1];
+		for(int e = 0; e < n * k; e++){
+			offsets[table[e] + 1]++;
+		}
+		for(int i = 0; i < n; i++){
+			offsets[i + 1] += offsets[i];
+		}
+		int[] from = new int[n * k];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for(int e = 0; e < n * k; e++){
+			from[fill[table[e]]++] = e / k;
+		}
+		boolean[] live = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		for(int i = 0; i < n; i++){
+			if(accepting[i]){
+				live[i] = true;
+				stack[top++] = i;
+			}
+		}
+		while(top > 0){
+			int i = stack[--top];
+			for(int e = offsets[i]; e < offsets[i + 1]; e++){
+				if(!live[from[e]]){
+					live[from[e]] = true;
+					stack[top++] = from[e];
+				}
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Builds the complement of a DFA over its own alphabet. Missing
+	 * transitions are sent to a new dead state, which becomes final.
+	 * @param a - the DFA
+	 * @return the total DFA accepting exactly the strings a rejects
+	 */
+	static DFA complement(DFA a){
+		CompiledDFA x = a.compile();
+		char[] abc = x.getABC();
+		int k = abc.length;
+		int n = x.getStateCount();
+		boolean partial = false;
+		int[] table = new int[(n + 1) * k];
+		for(int s = 0; s < n; s++){
+			for(int j = 0; j < k; j++){
+				int to = x.step(s, abc[j]);
+				partial |= to < 0;
+				table[s * k + j] = to < 0 ? n : to;
+			}
+		}
+		int total = partial ? n + 1 : n;
+		String[] names = new String[total];
+		boolean[] finals = new boolean[total];
+		for(int s = 0; s < n; s++){
+			names[s] = x.getName(s);
+			finals[s] = !x.isFinal(s);
+		}
+		if(partial){
+			Arrays.fill(table, n * k, total * k, n);
+			names[n] = unusedName(a, "dead");
+			finals[n] = true;
+		}
+		return build(names, finals, abc, table, x.getStartState());
+	}
+
+	/**
+	 * Makes the DFA out of a table, adding the states in table order
+	 */
+	private static DFA build(String[] names, boolean[] finals, char[] abc, int[] table, int start){
+		DFA dfa = new DFA();
+		for(int i = 0; i < names.length; i++){
+			if(finals[i]){
+				dfa.addFinalState(names[i]);
+			} else {
+				dfa.addState(names[i]);
+			}
+		}
+		dfa.setStartState(names[start]);
+		int k = abc.length;
+		for(int i = 0; i < names.length; i++){
+			for(int j = 0; j < k; j++){
+				dfa.addTransition(names[i], abc[j], names[table[i * k + j]]);
+			}
+		}
+		return dfa;
+	}
+
+	private static String name(CompiledDFA dfa, int state){
+		return state < 0 ? "-" : dfa.getName(state);
+	}
+
+	/**
+	 * Claims a name no earlier pair has
+	 * @param used - the names taken so far, the result is added to it
+	 * @param base - the name to start from
+	 * @return base, or base followed by the first number that is free
+	 */
+	private static String unique(Set<String> used, String base){
+		String ret = base;
+		for(int i = 1; !used.add(ret); i++){
+			ret = base + i;
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds a state name the DFA doesn't use yet
+	 * @param dfa - the DFA
+	 * @param base - the name to start from
+	 * @return base, or base followed by the first number that is free
+	 */
+	private static String unusedName(DFA dfa, String base){
+		String ret = base;
+		for(int i = 1; dfa.getState(ret) != null; i++){
+			ret = base + i;
+		}
+		return ret;
+	}
+
+	private static long key(int p, int q){
+		return ((long) p << 32) | (q & 0xFFFFFFFFL);
+	}
+}
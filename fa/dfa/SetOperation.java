@@ -0,0 +1,49 @@
+package fa.dfa;
+
+/**
+ * How a product of two DFAs decides acceptance from the two machines
+ * it runs side by side
+ * @author Ben Harper and Andrew Haddon
+ */
+public enum SetOperation {
+	/** accepts what both machines accept */
+	INTERSECTION,
+	/** accepts what either machine accepts */
+	UNION,
+	/** accepts what the first machine accepts and the second doesn't */
+	DIFFERENCE;
+
+	/**
+	 * @param a - true if the first machine accepts
+	 * @param b - true if the second machine accepts
+	 * @return true if the product accepts
+	 */
+	boolean accepts(boolean a, boolean b){
+		switch(this){
+		case INTERSECTION:
+			return a && b;
+		case UNION:
+			return a || b;
+		default:
+			return a && !b;
+		}
+	}
+
+	/**
+	 * Checks if a pair of states can never lead to acceptance, where
+	 * -1 is the dead state a missing transition goes to
+	 * @param p - the first machine's state
+	 * @param q - the second machine's state
+	 * @return true if the pair is dead
+	 */
+	boolean isDead(int p, int q){
+		switch(this){
+		case INTERSECTION:
+			return p < 0 || q < 0;
+		case UNION:
+			return p < 0 && q < 0;
+		default:
+			return p < 0;
+		}
+	}
+}
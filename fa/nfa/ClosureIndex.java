@@ -0,0 +1,321 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The e closures of every state of an NFA, all computed when the index
+ * is made and never changed afterwards, so it can be shared by any
+ * number of threads.
+ * <p>
+ * The states on an e cycle all have the same closure, so the strongly
+ * connected components of the e transitions are found first, with an
+ * iterative Tarjan search, and one closure is kept per component, which
+ * every state of the component points at. The components and the e
+ * transitions between them have no cycles. Starting from each component
+ * not covered yet, in topological order, they are searched depth first
+ * with an explicit stack, and the states of each component are appended
+ * to one shared array when the search first reaches it. Every component
+ * whose subtree never ran into a component reached before it has exactly
+ * that subtree as its closure, so it just points into the array. An e
+ * cycle is stored once, and on an e chain the whole chain is one search
+ * and each closure is a suffix of it.
+ * <p>
+ * The states of a closure are not in the order eClosure finds them in.
+ * Only DFA state names depend on that order, and ClosureOrder works it
+ * out when they are built. The NFA drops its index whenever an e
+ * transition or a state is added.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class ClosureIndex {
+
+	//eps[state] = ids reached on one e transition, in insertion order
+	private final int[][] eps;
+	//comp[state] = its component, numbered in the order Tarjan finishes them
+	private final int[] comp;
+	private final int components;
+	//the closures, the one of component c is members[start[c]] to members[end[c] - 1]
+	private final int[] members;
+	private final int[] start;
+	private final int[] end;
+
+	/**
+	 * Reads the e transitions out of the given states and computes every closure
+	 * @param List<NFAState> states - the NFA's states indexed by id
+	 */
+	ClosureIndex(List<NFAState> states) {
+		eps = eTransitions(states);
+		comp = new int[states.size()];
+		components = components(eps, comp);
+		start = new int[components];
+		end = new int[components];
+		Arrays.fill(start, -1);
+		members = search();
+	}
+
+	/**
+	 * @return int - the number of states
+	 */
+	int size() {
+		return comp.length;
+	}
+
+	/**
+	 * @param int id - the state id
+	 * @return int - where its closure starts in members()
+	 */
+	int start(int id) {
+		return start[comp[id]];
+	}
+
+	/**
+	 * @param int id - the state id
+	 * @return int - where its closure ends in members(), exclusive
+	 */
+	int end(int id) {
+		return end[comp[id]];
+	}
+
+	/**
+	 * Getter for the array every closure is a range of
+	 * @return int[] - the state ids, must not be modified
+	 */
+	int[] members() {
+		return members;
+	}
+
+	/**
+	 * Gets a copy of the closure of a state
+	 * @param int id - the state id
+	 * @return int[] - the ids of the states in the closure, in no particular order
+	 */
+	int[] toArray(int id) {
+		return Arrays.copyOfRange(members, start(id), end(id));
+	}
+
+	/**
+	 * @param int id - the state id
+	 * @return int[] - ids reached on one e transition, in insertion order, must not be modified
+	 */
+	int[] successors(int id) {
+		return eps[id];
+	}
+
+	/**
+	 * @param int id - the state id
+	 * @return int - its strongly connected component, a component is finished
+	 * after every component it has e transitions to
+	 */
+	int component(int id) {
+		return comp[id];
+	}
+
+	/**
+	 * @return int - the number of strongly connected components, which is
+	 * the number of closures computed
+	 */
+	int componentCount() {
+		return components;
+	}
+
+	/**
+	 * Runs a depth first search over the components from every component
+	 * whose closure isn't known yet, filling in start and end
+	 * @return int[] - the states of the searches one after another
+	 */
+	private int[] search() {
+		int n = comp.length;
+		int k = components;
+		//the states of component c are byComp[first[c]] to byComp[first[c + 1] - 1]
+		int[] first = new int[k + 1];
+		for (int s = 0; s < n; s++) {
+			first[comp[s] + 1]++;
+		}
+		for (int c = 0; c < k; c++) {
+			first[c + 1] += first[c];
+		}
+		int[] byComp = new int[n];
+		int[] fill = Arrays.copyOf(first, k);
+		for (int s = 0; s < n; s++) {
+			byComp[fill[comp[s]]++] = s;
+		}
+		//the components c has e transitions to are succ[succFirst[c]] to succ[succFirst[c + 1] - 1]
+		int[] succFirst = new int[k + 1];
+		int[] succ = new int[16];
+		int m = 0;
+		int[] seen = new int[k];
+		Arrays.fill(seen, -1);
+		for (int c = 0; c < k; c++) {
+			succFirst[c] = m;
+			for (int i = first[c]; i < first[c + 1]; i++) {
+				for (int t : eps[byComp[i]]) {
+					int d = comp[t];
+					if (d != c && seen[d] != c) {
+						seen[d] = c;
+						if (m == succ.length) {
+							succ = Arrays.copyOf(succ, m * 2);
+						}
+						succ[m++] = d;
+					}
+				}
+			}
+		}
+		succFirst[k] = m;
+
+		int[] ret = new int[Math.max(n, 16)];
+		int len = 0;
+		int[] marks = new int[k];
+		int stamp = 0;
+		//pos[c] = where the states of c are in ret, for components of the current search
+		int[] pos = new int[k];
+		//the search path, the next e transition to follow from each component on it,
+		//and the leftmost component reached before it that its subtree ran into so far
+		int[] path = new int[k];
+		int[] next = new int[k];
+		int[] low = new int[k];
+		//Tarjan finishes a component after every component it reaches,
+		//so going down from the last one is a topological order
+		for (int root = k - 1; root >= 0; root--) {
+			if (start[root] >= 0) {
+				continue;
+			}
+			stamp++;
+			int depth = 0;
+			marks[root] = stamp;
+			pos[root] = len;
+			ret = append(ret, len, byComp, first[root], first[root + 1]);
+			len += first[root + 1] - first[root];
+			path[depth] = root;
+			next[depth] = succFirst[root];
+			low[depth++] = Integer.MAX_VALUE;
+			while (depth > 0) {
+				int c = path[depth - 1];
+				if (next[depth - 1] < succFirst[c + 1]) {
+					int d = succ[next[depth - 1]++];
+					if (marks[d] != stamp) {
+						marks[d] = stamp;
+						pos[d] = len;
+						ret = append(ret, len, byComp, first[d], first[d + 1]);
+						len += first[d + 1] - first[d];
+						path[depth] = d;
+						next[depth] = succFirst[d];
+						low[depth++] = Integer.MAX_VALUE;
+					} else {
+						low[depth - 1] = Math.min(low[depth - 1], pos[d]);
+					}
+					continue;
+				}
+				//every e transition of c has been followed, and its subtree is
+				//its closure unless it ran into a component reached before c
+				depth--;
+				if (low[depth] >= pos[c] && start[c] < 0) {
+					start[c] = pos[c];
+					end[c] = len;
+				}
+				if (depth > 0) {
+					low[depth - 1] = Math.min(low[depth - 1], low[depth]);
+				}
+			}
+		}
+		return Arrays.copyOf(ret, len);
+	}
+
+	/**
+	 * Copies from[lo] to from[hi - 1] to the end of an array, growing it if needed
+	 * @return int[] - the array, or a bigger copy of it
+	 */
+	private static int[] append(int[] to, int len, int[] from, int lo, int hi) {
+		if (len + hi - lo > to.length) {
+			to = Arrays.copyOf(to, Math.max(to.length * 2, len + hi - lo));
+		}
+		System.arraycopy(from, lo, to, len, hi - lo);
+		return to;
+	}
+
+	/**
+	 * Reads the e transitions out of the given states
+	 * @param List<NFAState> states - the NFA's states indexed by id
+	 * @return int[][] - the ids each state reaches on one e transition, in insertion order
+	 */
+	private static int[][] eTransitions(List<NFAState> states) {
+		int[][] ret = new int[states.size()][];
+		for (NFAState state : states) {
+			Set<NFAState> to = state.getTo('e');
+			int[] ids = new int[to == null ? 0 : to.size()];
+			if (to != null) {
+				int i = 0;
+				for (NFAState s : to) {
+					ids[i++] = s.getId();
+				}
+			}
+			ret[state.getId()] = ids;
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds the strongly connected components of the e transitions
+	 * with Tarjan's algorithm, using explicit stacks. A component is
+	 * finished after every component it has e transitions to.
+	 * @param int[][] eps - eps[s] = the states s has e transitions to
+	 * @param int[] comp - filled with the component of each state
+	 * @return int - the number of components
+	 */
+	private static int components(int[][] eps, int[] comp) {
+		int n = eps.length;
+		int[] index = new int[n];
+		int[] low = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int top = 0;
+		//the search path, with the next e transition to follow from each state on it
+		int[] path = new int[n];
+		int[] next = new int[n];
+		int depth = 0;
+		int counter = 1;
+		int count = 0;
+		for (int root = 0; root < n; root++) {
+			if (index[root] != 0) {
+				continue;
+			}
+			path[depth] = root;
+			next[depth++] = 0;
+			index[root] = low[root] = counter++;
+			stack[top++] = root;
+			onStack[root] = true;
+			while (depth > 0) {
+				int s = path[depth - 1];
+				if (next[depth - 1] < eps[s].length) {
+					int t = eps[s][next[depth - 1]++];
+					if (index[t] == 0) {
+						index[t] = low[t] = counter++;
+						stack[top++] = t;
+						onStack[t] = true;
+						path[depth] = t;
+						next[depth++] = 0;
+					} else if (onStack[t]) {
+						low[s] = Math.min(low[s], index[t]);
+					}
+					continue;
+				}
+				//every e transition of s has been followed
+				depth--;
+				if (depth > 0) {
+					int parent = path[depth - 1];
+					low[parent] = Math.min(low[parent], low[s]);
+				}
+				if (low[s] == index[s]) {
+					int t;
+					do {
+						t = stack[--top];
+						onStack[t] = false;
+						comp[t] = count;
+					} while (t != s);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,121 @@
+package fa.nfa;
+
+import java.util.Arrays;
+
+/**
+ * Lists the states of a subset in the order the old set based search
+ * found them in, which is the order DFA state names list them in. That
+ * search took the states of the current subset in turn, added the states
+ * each one leads to on the symbol, and then the e closure of each newly
+ * added state in the depth first order of eClosure, skipping the states
+ * it already had. Here the depth first search stops at any state a search
+ * for the same subset reached before, since all of its closure is in the
+ * subset by then, so a subset takes time linear in its states and their e
+ * transitions, even though the closures of an e cycle add up to the square
+ * of its length. One is used by a single thread at a time.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class ClosureOrder {
+
+	private final ClosureIndex closures;
+	//added[s] == stamp if s is in the subset being built
+	private final int[] added;
+	//searched[s] == stamp if a search for the subset being built reached s
+	private final int[] searched;
+	private int stamp;
+	//the subset in order
+	private final int[] buffer;
+	private int len;
+	//where the states added since the last call to close start in buffer
+	private int open;
+	//the search path, with the next e transition to follow from each state on it
+	private final int[] path;
+	private final int[] next;
+
+	/**
+	 * @param ClosureIndex closures - the e transitions to search
+	 */
+	ClosureOrder(ClosureIndex closures) {
+		this.closures = closures;
+		int n = closures.size();
+		added = new int[n];
+		searched = new int[n];
+		buffer = new int[n];
+		path = new int[n];
+		next = new int[n];
+	}
+
+	/**
+	 * @return ClosureIndex - the index this was made for
+	 */
+	ClosureIndex index() {
+		return closures;
+	}
+
+	/**
+	 * Starts a new, empty subset
+	 */
+	void begin() {
+		stamp++;
+		len = 0;
+		open = 0;
+	}
+
+	/**
+	 * Adds a state reached on the symbol, unless the subset already has it
+	 * @param int state - the state id
+	 */
+	void add(int state) {
+		if (added[state] != stamp) {
+			added[state] = stamp;
+			buffer[len++] = state;
+		}
+	}
+
+	/**
+	 * Adds the e closures of the states added since the last call, in order
+	 */
+	void close() {
+		int end = len;
+		for (int i = open; i < end; i++) {
+			search(buffer[i]);
+		}
+		open = len;
+	}
+
+	/**
+	 * @return int[] - the states of the subset in the order they were added
+	 */
+	int[] toArray() {
+		return Arrays.copyOf(buffer, len);
+	}
+
+	/**
+	 * Adds the states reachable on e from root in depth first order,
+	 * without going into states an earlier search already went through
+	 * @param int root - the state id, already in the subset
+	 */
+	private void search(int root) {
+		if (searched[root] == stamp) {
+			return;
+		}
+		searched[root] = stamp;
+		int depth = 0;
+		path[depth] = root;
+		next[depth++] = 0;
+		while (depth > 0) {
+			int[] to = closures.successors(path[depth - 1]);
+			if (next[depth - 1] < to.length) {
+				int t = to[next[depth - 1]++];
+				if (searched[t] != stamp) {
+					searched[t] = stamp;
+					add(t);
+					path[depth] = t;
+					next[depth++] = 0;
+				}
+				continue;
+			}
+			depth--;
+		}
+	}
+}
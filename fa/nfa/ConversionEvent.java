@@ -0,0 +1,84 @@
+package fa.nfa;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for one NFA to DFA conversion, carrying the
+ * same numbers as ConversionStats. While the event isn't enabled in
+ * a recording, conversions only pay for the isEnabled check.
+ * @author Ben Harper and Andrew Haddon
+ */
+@Name("fa.NFAConversion")
+@Label("NFA Conversion")
+@Category("Finite Automata")
+@Description("Subset construction of a DFA from an NFA")
+final class ConversionEvent extends Event {
+
+	@Label("NFA States")
+	int nfaStates;
+
+	@Label("Parallel")
+	boolean parallel;
+
+	@Label("Subsets Explored")
+	long subsets;
+
+	@Label("Closure Hits")
+	long closureHits;
+
+	@Label("Closure Misses")
+	long closureMisses;
+
+	@Label("Transitions Emitted")
+	long transitions;
+
+	@Label("Peak Frontier")
+	int peakFrontier;
+
+	@Label("Table Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long tableTime;
+
+	@Label("Closure Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long closureTime;
+
+	@Label("Step Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long stepTime;
+
+	@Label("Hashing Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long hashingTime;
+
+	@Label("Naming Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long namingTime;
+
+	@Label("Insertion Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long insertionTime;
+
+	/**
+	 * Copies the numbers of one conversion into the event
+	 * @param ConversionStats stats - the stats of that conversion alone
+	 */
+	void set(ConversionStats stats) {
+		subsets = stats.getSubsetsExplored();
+		closureHits = stats.getClosureHits();
+		closureMisses = stats.getClosureMisses();
+		transitions = stats.getTransitionsEmitted();
+		peakFrontier = stats.getPeakFrontier();
+		tableTime = stats.getNanos(ConversionStats.Phase.TABLE);
+		closureTime = stats.getNanos(ConversionStats.Phase.CLOSURES);
+		stepTime = stats.getNanos(ConversionStats.Phase.STEPS);
+		hashingTime = stats.getNanos(ConversionStats.Phase.HASHING);
+		namingTime = stats.getNanos(ConversionStats.Phase.NAMING);
+		insertionTime = stats.getNanos(ConversionStats.Phase.INSERTION);
+	}
+}
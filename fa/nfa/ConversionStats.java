@@ -0,0 +1,172 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counters and phase timings of NFA to DFA conversions. Pass one to
+ * NFA.getDFA to have it filled in; the numbers of every conversion it
+ * is passed to add up until reset is called. Conversions that are not
+ * given one don't count or time anything.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ConversionStats {
+
+	/**
+	 * The parts a conversion's time is split into
+	 */
+	public enum Phase {
+		/** reading the NFA's states and transitions into arrays */
+		TABLE,
+		/** building the e closure index, when the NFA didn't have one yet */
+		CLOSURES,
+		/** following the symbol transitions of each subset */
+		STEPS,
+		/** hashing subsets and looking them up */
+		HASHING,
+		/** building the DFA state names */
+		NAMING,
+		/** adding the states and transitions to the DFA */
+		INSERTION
+	}
+
+	private long conversions;
+	private long subsets;
+	private long closureHits;
+	private long closureMisses;
+	private long transitions;
+	private int peakFrontier;
+	private final long[] nanos;
+
+	public ConversionStats() {
+		nanos = new long[Phase.values().length];
+	}
+
+	/**
+	 * @return long - the number of conversions counted
+	 */
+	public synchronized long getConversions() {
+		return conversions;
+	}
+
+	/**
+	 * @return long - the number of subsets found, which is the number of DFA states
+	 */
+	public synchronized long getSubsetsExplored() {
+		return subsets;
+	}
+
+	/**
+	 * @return long - the number of e closures looked up in the closure index
+	 */
+	public synchronized long getClosureHits() {
+		return closureHits;
+	}
+
+	/**
+	 * @return long - the number of e closures computed to build the closure index,
+	 * one for each e cycle and each state on none
+	 */
+	public synchronized long getClosureMisses() {
+		return closureMisses;
+	}
+
+	/**
+	 * @return long - the number of transitions added to the DFAs
+	 */
+	public synchronized long getTransitionsEmitted() {
+		return transitions;
+	}
+
+	/**
+	 * @return int - the most subsets found but not yet expanded at any one time
+	 */
+	public synchronized int getPeakFrontier() {
+		return peakFrontier;
+	}
+
+	/**
+	 * @param Phase phase - a part of the conversion
+	 * @return long - the nanoseconds spent in it
+	 */
+	public synchronized long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return long - the nanoseconds spent in all the phases
+	 */
+	public synchronized long getTotalNanos() {
+		long ret = 0;
+		for (long n : nanos) {
+			ret += n;
+		}
+		return ret;
+	}
+
+	/**
+	 * Sets everything back to zero
+	 */
+	public synchronized void reset() {
+		conversions = 0;
+		subsets = 0;
+		closureHits = 0;
+		closureMisses = 0;
+		transitions = 0;
+		peakFrontier = 0;
+		Arrays.fill(nanos, 0);
+	}
+
+	/**
+	 * Adds the numbers of another stats object to these ones
+	 * @param ConversionStats other - the numbers to add
+	 */
+	synchronized void add(ConversionStats other) {
+		synchronized (other) {
+			conversions += other.conversions;
+			subsets += other.subsets;
+			closureHits += other.closureHits;
+			closureMisses += other.closureMisses;
+			transitions += other.transitions;
+			peakFrontier = Math.max(peakFrontier, other.peakFrontier);
+			for (int i = 0; i < nanos.length; i++) {
+				nanos[i] += other.nanos[i];
+			}
+		}
+	}
+
+	synchronized void addConversion(long subsetCount, long transitionCount) {
+		conversions++;
+		subsets += subsetCount;
+		transitions += transitionCount;
+	}
+
+	synchronized void addClosures(long hits, long misses) {
+		closureHits += hits;
+		closureMisses += misses;
+	}
+
+	synchronized void frontier(int size) {
+		peakFrontier = Math.max(peakFrontier, size);
+	}
+
+	synchronized void addNanos(Phase phase, long n) {
+		nanos[phase.ordinal()] += n;
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("conversions = ").append(conversions).append('\n');
+		sb.append("subsets explored = ").append(subsets).append('\n');
+		sb.append("closure hits = ").append(closureHits)
+				.append(", misses = ").append(closureMisses).append('\n');
+		sb.append("transitions emitted = ").append(transitions).append('\n');
+		sb.append("peak frontier = ").append(peakFrontier).append('\n');
+		for (Phase p : Phase.values()) {
+			sb.append(String.format(Locale.ROOT, "%-10s %12.3f ms\n",
+					p.name().toLowerCase(Locale.ROOT), nanos[p.ordinal()] / 1e6));
+		}
+		return sb.toString();
+	}
+}
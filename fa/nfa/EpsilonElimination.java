@@ -0,0 +1,126 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * Turns an NFA into an equivalent one without e transitions.
+ * The states on an e cycle all have the same closure, so each strongly
+ * connected component of the e transitions, as found by the NFA's
+ * ClosureIndex, becomes a single state named after its first state.
+ * A component's closure is then the union of the closures of the
+ * components it has e transitions to, worked out once per component
+ * in the order Tarjan finishes them. Finally each new
+ * state gets the symbol transitions of every state in its closure,
+ * and is final if its closure holds a final state.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class EpsilonElimination {
+
+	private EpsilonElimination() {
+	}
+
+	/**
+	 * Builds the e free NFA. The given NFA is not changed.
+	 * @param NFA nfa - the machine
+	 * @return NFA - a new machine accepting the same strings
+	 */
+	static NFA of(NFA nfa) {
+		List<NFAState> states = nfa.stateList();
+		int n = states.size();
+		ClosureIndex index = nfa.closureIndex();
+		//comp[s] = component of state s, numbered in the order Tarjan finishes them
+		int[] comp = new int[n];
+		for (int s = 0; s < n; s++) {
+			comp[s] = index.component(s);
+		}
+		int count = index.componentCount();
+		//closure[c] = the components reachable from c on e transitions, c included.
+		//Tarjan finishes a component after every component it reaches.
+		BitSet[] closure = new BitSet[count];
+		List<List<Integer>> members = new ArrayList<List<Integer>>();
+		for (int c = 0; c < count; c++) {
+			closure[c] = new BitSet();
+			closure[c].set(c);
+			members.add(new ArrayList<Integer>());
+		}
+		for (int s = 0; s < n; s++) {
+			members.get(comp[s]).add(s);
+		}
+		for (int c = 0; c < count; c++) {
+			for (int s : members.get(c)) {
+				for (int t : index.successors(s)) {
+					if (comp[t] != c) {
+						closure[c].or(closure[comp[t]]);
+					}
+				}
+			}
+		}
+		//each component is named after its first state and added in that order
+		NFA ret = new NFA();
+		String[] names = new String[count];
+		boolean[] isFinal = new boolean[count];
+		Set<? extends State> finals = nfa.getFinalStates();
+		for (int c = 0; c < count; c++) {
+			names[c] = states.get(members.get(c).get(0)).getName();
+			for (int d = closure[c].nextSetBit(0); d >= 0 && !isFinal[c]; d = closure[c].nextSetBit(d + 1)) {
+				for (int s : members.get(d)) {
+					if (finals.contains(states.get(s))) {
+						isFinal[c] = true;
+						break;
+					}
+				}
+			}
+		}
+		NFAState q0 = (NFAState) nfa.getStartState();
+		for (int s = 0; s < n; s++) {
+			int c = comp[s];
+			if (members.get(c).get(0) != s) {
+				continue;
+			}
+			if (isFinal[c]) {
+				ret.addFinalState(names[c]);
+			} else {
+				ret.addState(names[c]);
+			}
+		}
+		if (q0 != null) {
+			ret.addStartState(names[comp[q0.getId()]]);
+		}
+		List<String> from = new ArrayList<String>();
+		StringBuilder on = new StringBuilder();
+		List<String> to = new ArrayList<String>();
+		for (int s = 0; s < n; s++) {
+			int c = comp[s];
+			if (members.get(c).get(0) != s) {
+				continue;
+			}
+			for (int d = closure[c].nextSetBit(0); d >= 0; d = closure[c].nextSetBit(d + 1)) {
+				for (int q : members.get(d)) {
+					NFAState state = states.get(q);
+					for (char symb : nfa.getABC()) {
+						Set<NFAState> targets = symb == 'e' ? null : state.getTo(symb);
+						if (targets != null) {
+							for (NFAState t : targets) {
+								from.add(names[c]);
+								on.append(symb);
+								to.add(names[comp[t.getId()]]);
+							}
+						}
+					}
+					for (int i = 0; i < state.getRangeCount(); i++) {
+						ret.addRangeTransition(names[c], state.getRangeLow(i), state.getRangeHigh(i),
+								names[comp[state.getRangeTo(i).getId()]]);
+					}
+				}
+			}
+		}
+		ret.addTransitions(from.toArray(new String[0]), on.toString().toCharArray(),
+				to.toArray(new String[0]));
+		return ret;
+	}
+}
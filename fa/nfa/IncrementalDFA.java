@@ -0,0 +1,290 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import fa.dfa.DFA;
+
+/**
+ * Keeps the DFA of an NFA up to date while transitions are added to
+ * the NFA, instead of determinizing the whole machine again after
+ * every change. It remembers which subset of NFA states each DFA state
+ * stands for. A new transition from state s on symbol c only changes
+ * the c transition of the subsets that contain s, so only those are
+ * recomputed and patched into the DFA, and whatever new subsets they
+ * lead to are then found with the usual breadth first search.
+ * A symbol the NFA didn't use before adds a column, which is worked
+ * out for every subset.
+ * <p>
+ * A new e transition changes the e closures, so the subsets themselves
+ * are no longer the same and the DFA is built again from scratch.
+ * So is any change made to the NFA directly instead of through this
+ * class, which is noticed on the next call.
+ * <p>
+ * The patched DFA accepts the same strings as a rebuilt one, but it
+ * keeps states that are no longer reachable from the start state, and
+ * a new subset is named in the order its states were found in here,
+ * which may differ from a rebuild. An IncrementalDFA is not safe to
+ * use from several threads.
+ * @author Ben Harper and Andrew Haddon
+ */
+public class IncrementalDFA {
+
+	private final NFA nfa;
+	private DFA dfa;
+	//the NFA's modCount the DFA is up to date with
+	private int modCount;
+	private int rebuilds;
+
+	//the symbols of the columns, in the order they were added
+	private final StringBuilder symbols;
+	private final HashMap<Character, Integer> columns;
+	//subsets in discovery order, the index is the DFA state id
+	private final List<int[]> subsets;
+	private final HashMap<StateSet, Integer> ids;
+	private final List<String> names;
+	//containing.get(s) = ids of the subsets NFA state s is in
+	private final List<List<Integer>> containing;
+
+	//puts the states of the next subset in order, made again when the closure index changes
+	private ClosureOrder order;
+
+	/**
+	 * Determinizes the NFA and starts following its changes
+	 * @param NFA nfa - the machine, it must have a start state and no range transitions
+	 */
+	public IncrementalDFA(NFA nfa) {
+		if (nfa.getStartState() == null) {
+			throw new IllegalStateException("The NFA has no start state");
+		}
+		this.nfa = nfa;
+		symbols = new StringBuilder();
+		columns = new HashMap<Character, Integer>();
+		subsets = new ArrayList<int[]>();
+		ids = new HashMap<StateSet, Integer>();
+		names = new ArrayList<String>();
+		containing = new ArrayList<List<Integer>>();
+		rebuild();
+	}
+
+	/**
+	 * Getter for the DFA, rebuilt first if the NFA was changed directly.
+	 * The same instance is patched by later calls to addTransition.
+	 * @return DFA - the DFA of the NFA as it is now
+	 */
+	public DFA getDFA() {
+		sync();
+		return dfa;
+	}
+
+	/**
+	 * Adds a state to the NFA. New states aren't in any subset, so the DFA doesn't change.
+	 * @param String name - name of the state
+	 */
+	public void addState(String name) {
+		sync();
+		nfa.addState(name);
+		modCount = nfa.modCount();
+	}
+
+	/**
+	 * Adds a final state to the NFA. New states aren't in any subset, so the DFA doesn't change.
+	 * @param String name - name of the state
+	 */
+	public void addFinalState(String name) {
+		sync();
+		nfa.addFinalState(name);
+		modCount = nfa.modCount();
+	}
+
+	/**
+	 * Adds a transition to the NFA and patches the DFA to match
+	 * @param String fromState - name of the state the transition is from
+	 * @param char onSymb - the symbol, e for a free transition, which rebuilds the DFA
+	 * @param String toState - name of the state the transition ends on
+	 */
+	public void addTransition(String fromState, char onSymb, String toState) {
+		sync();
+		nfa.addTransition(fromState, onSymb, toState);
+		if (nfa.modCount() == modCount) {
+			//one of the states doesn't exist, nothing was added
+			return;
+		}
+		modCount = nfa.modCount();
+		if (onSymb == 'e') {
+			rebuild();
+			return;
+		}
+		int from = nfa.state(fromState).getId();
+		int first = subsets.size();
+		Integer col = columns.get(onSymb);
+		if (col == null) {
+			//a new symbol, every subset needs a transition on it
+			col = symbols.length();
+			symbols.append(onSymb);
+			columns.put(onSymb, col);
+			for (int i = 0; i < first; i++) {
+				setTransition(i, col);
+			}
+		} else {
+			//copied since new subsets holding the state are added to the list while it is walked
+			for (int i : new ArrayList<Integer>(containing(from))) {
+				setTransition(i, col);
+			}
+		}
+		expand(first);
+	}
+
+	/**
+	 * Getter for the number of times the DFA was built from scratch,
+	 * counting the first time
+	 * @return int - the rebuild count
+	 */
+	public int getRebuildCount() {
+		return rebuilds;
+	}
+
+	/**
+	 * Rebuilds the DFA if the NFA was changed without this class seeing it
+	 */
+	private void sync() {
+		if (nfa.modCount() != modCount) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Determinizes the NFA from scratch and reads the subsets back
+	 */
+	private void rebuild() {
+		SubsetConstruction sc = new SubsetConstruction(nfa, false, null);
+		sc.run();
+		dfa = sc.toDFA();
+		modCount = nfa.modCount();
+		rebuilds++;
+		symbols.setLength(0);
+		symbols.append(sc.symbols());
+		columns.clear();
+		for (int j = 0; j < symbols.length(); j++) {
+			columns.put(symbols.charAt(j), j);
+		}
+		subsets.clear();
+		ids.clear();
+		names.clear();
+		containing.clear();
+		for (int i = 0; i < sc.size(); i++) {
+			add(sc.subset(i).clone(), sc.name(i));
+		}
+	}
+
+	/**
+	 * Recomputes one transition of a subset and patches it into the DFA
+	 * @param int id - the subset
+	 * @param int col - the column
+	 */
+	private void setTransition(int id, int col) {
+		int to = intern(step(subsets.get(id), symbols.charAt(col)));
+		dfa.addTransition(names.get(id), symbols.charAt(col), names.get(to));
+	}
+
+	/**
+	 * Fills in the transitions of the subsets found from first on, and of
+	 * any further subsets those lead to, in breadth first order
+	 * @param int first - id of the first new subset
+	 */
+	private void expand(int first) {
+		//the list doubles as the BFS queue
+		for (int i = first; i < subsets.size(); i++) {
+			for (int j = 0; j < symbols.length(); j++) {
+				setTransition(i, j);
+			}
+		}
+	}
+
+	/**
+	 * Finds the id of a subset, adding it to the DFA if it is new
+	 * @param int[] subset - the NFA state ids in discovery order
+	 * @return int - the id
+	 */
+	private int intern(int[] subset) {
+		Integer id = ids.get(new StateSet(subset));
+		if (id != null) {
+			return id;
+		}
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < subset.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(nfa.stateList().get(subset[i]).getName());
+		}
+		String name = sb.append(']').toString();
+		boolean fin = false;
+		for (int s : subset) {
+			fin |= nfa.getFinalStates().contains(nfa.stateList().get(s));
+		}
+		if (fin) {
+			dfa.addFinalState(name);
+		} else {
+			dfa.addState(name);
+		}
+		return add(subset, name);
+	}
+
+	/**
+	 * Records a subset the DFA has a state for
+	 * @param int[] subset - the NFA state ids in discovery order
+	 * @param String name - the DFA state name
+	 * @return int - the new id
+	 */
+	private int add(int[] subset, String name) {
+		int id = subsets.size();
+		subsets.add(subset);
+		ids.put(new StateSet(subset), id);
+		names.add(name);
+		for (int s : subset) {
+			containing(s).add(id);
+		}
+		return id;
+	}
+
+	/**
+	 * @param int state - an NFA state id
+	 * @return List<Integer> - ids of the subsets the state is in
+	 */
+	private List<Integer> containing(int state) {
+		while (containing.size() <= state) {
+			containing.add(new ArrayList<Integer>());
+		}
+		return containing.get(state);
+	}
+
+	/**
+	 * Computes the subset reached from a subset on a symbol, including
+	 * e closures, keeping the states in the order SubsetConstruction names them in
+	 * @param int[] curr - the current subset
+	 * @param char symb - the symbol
+	 * @return int[] - the next subset in discovery order
+	 */
+	private int[] step(int[] curr, char symb) {
+		List<NFAState> states = nfa.stateList();
+		ClosureIndex closures = nfa.closureIndex();
+		if (order == null || order.index() != closures) {
+			order = new ClosureOrder(closures);
+		}
+		order.begin();
+		for (int s : curr) {
+			Set<NFAState> targets = states.get(s).getTo(symb);
+			if (targets == null) {
+				continue;
+			}
+			for (NFAState t : targets) {
+				order.add(t.getId());
+			}
+			order.close();
+		}
+		return order.toArray();
+	}
+}
@@ -0,0 +1,254 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A DFA for an NFA that is built while inputs are matched.
+ * Only the subsets of NFA states an input actually reaches are
+ * determinized, and each one is cached as a DFA state that remembers
+ * the transitions already followed out of it. The cache holds at most
+ * a fixed number of states; once it is full either the whole cache
+ * is flushed or single states are evicted with the clock algorithm.
+ * The NFA is read once when the LazyDFA is made, later changes to it
+ * are not seen. A LazyDFA is not safe to use from several threads.
+ * @author Ben Harper and Andrew Haddon
+ */
+public class LazyDFA {
+
+	/**
+	 * What to do when a new state is needed and the cache is full
+	 */
+	public enum Eviction {
+		/** drop every cached state and start over */
+		FLUSH,
+		/** drop one state that hasn't been used since the clock hand last passed it */
+		CLOCK
+	}
+
+	/**
+	 * A subset of NFA states cached as a DFA state
+	 */
+	private static final class CachedState {
+		//sorted ids of the NFA states, null once evicted
+		private int[] members;
+		private StateSet key;
+		private boolean isFinal;
+		//next[column] = state reached on that symbol, null if not followed yet
+		private CachedState[] next;
+		//set when used, cleared as the clock hand passes
+		private boolean referenced;
+		private boolean evicted;
+	}
+
+	public static final int DEFAULT_MAX_STATES = 10000;
+
+	//the NFA's transitions over state ids
+	private final NFATable nfa;
+	private final int maxStates;
+	private final Eviction eviction;
+
+	private final HashMap<StateSet, CachedState> cache;
+	//cache slots walked by the clock hand
+	private final CachedState[] slots;
+	private int used;
+	private int hand;
+	private long evictions;
+	private CachedState start;
+
+	//scratch space for building the next subset
+	private final int[] marks;
+	private int stamp;
+	private final int[] buffer;
+
+	/**
+	 * Creates a lazy DFA with the default cache size that flushes when full
+	 * @param NFA nfa - the machine to match, it must have a start state and no range transitions
+	 */
+	public LazyDFA(NFA nfa) {
+		this(nfa, DEFAULT_MAX_STATES, Eviction.FLUSH);
+	}
+
+	/**
+	 * Creates a lazy DFA
+	 * @param NFA nfa - the machine to match, it must have a start state and no range transitions
+	 * @param int maxStates - the most DFA states kept at once, at least 2
+	 * @param Eviction eviction - how room is made when the cache is full
+	 */
+	public LazyDFA(NFA nfa, int maxStates, Eviction eviction) {
+		if (maxStates < 2) {
+			throw new IllegalArgumentException("The cache must hold at least 2 states");
+		}
+		if (nfa.getStartState() == null) {
+			throw new IllegalStateException("The NFA has no start state");
+		}
+		this.nfa = new NFATable(nfa);
+		this.maxStates = maxStates;
+		this.eviction = eviction;
+		cache = new HashMap<StateSet, CachedState>();
+		slots = new CachedState[maxStates];
+		marks = new int[this.nfa.size()];
+		buffer = new int[this.nfa.size()];
+	}
+
+	/**
+	 * Matches the input, determinizing whatever it reaches that isn't cached.
+	 * As with DFA.accepts, the single symbol e stands for the empty string.
+	 * @param CharSequence s - the input
+	 * @return boolean - true if s is in the language of the NFA
+	 */
+	public boolean accepts(CharSequence s) {
+		int len = s.length();
+		if (len == 1 && s.charAt(0) == 'e') {
+			len = 0;
+		}
+		if (start == null || start.evicted) {
+			start = intern(nfa.closures().toArray(nfa.start()), null);
+		}
+		CachedState curr = start;
+		for (int i = 0; i < len; i++) {
+			int col = nfa.column(s.charAt(i));
+			if (col < 0) {
+				return false;
+			}
+			curr.referenced = true;
+			CachedState next = curr.next[col];
+			if (next == null || next.evicted) {
+				next = intern(step(curr.members, col), curr);
+				//a flush may have dropped curr, so only remember the edge if it's still cached
+				if (!curr.evicted) {
+					curr.next[col] = next;
+				}
+			}
+			curr = next;
+			//nothing leaves the empty subset
+			if (curr.members.length == 0) {
+				return false;
+			}
+		}
+		return curr.isFinal;
+	}
+
+	/**
+	 * Getter for the number of DFA states currently cached
+	 * @return int - the cache size
+	 */
+	public int getCachedStateCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Getter for the number of states dropped from the cache so far
+	 * @return long - the eviction count
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Computes the subset reached from a subset on a symbol, including e closures
+	 * @param int[] members - the current subset
+	 * @param int col - the symbol's column
+	 * @return int[] - the next subset
+	 */
+	private int[] step(int[] members, int col) {
+		ClosureIndex closures = nfa.closures();
+		int[] closed = closures.members();
+		stamp++;
+		int len = 0;
+		for (int s : members) {
+			int[] targets = nfa.targets(s, col);
+			if (targets == null) {
+				continue;
+			}
+			for (int t : targets) {
+				if (marks[t] == stamp) {
+					continue;
+				}
+				for (int i = closures.start(t), end = closures.end(t); i < end; i++) {
+					int c = closed[i];
+					if (marks[c] != stamp) {
+						marks[c] = stamp;
+						buffer[len++] = c;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(buffer, len);
+	}
+
+	/**
+	 * Finds the cached state for a subset, caching a new one if needed
+	 * @param int[] members - the subset
+	 * @param CachedState pinned - a state that must not be evicted, or null
+	 * @return CachedState - the cached state
+	 */
+	private CachedState intern(int[] members, CachedState pinned) {
+		StateSet key = new StateSet(members);
+		CachedState ret = cache.get(key);
+		if (ret != null) {
+			return ret;
+		}
+		if (used == maxStates) {
+			makeRoom(pinned);
+		}
+		ret = new CachedState();
+		ret.key = key;
+		ret.members = key.ids();
+		ret.next = new CachedState[nfa.symbols().length];
+		for (int s : ret.members) {
+			if (nfa.isFinal(s)) {
+				ret.isFinal = true;
+				break;
+			}
+		}
+		cache.put(key, ret);
+		if (used < maxStates) {
+			slots[used++] = ret;
+		} else {
+			//makeRoom left the clock hand on the slot it freed
+			slots[hand] = ret;
+			hand = (hand + 1) % maxStates;
+		}
+		ret.referenced = true;
+		return ret;
+	}
+
+	/**
+	 * Frees at least one cache slot
+	 * @param CachedState pinned - a state that must not be evicted, or null
+	 */
+	private void makeRoom(CachedState pinned) {
+		if (eviction == Eviction.FLUSH) {
+			for (int i = 0; i < used; i++) {
+				evict(slots[i]);
+				slots[i] = null;
+			}
+			used = 0;
+			return;
+		}
+		//advances the hand until it finds a state not used since its last pass
+		while (true) {
+			CachedState s = slots[hand];
+			if (s != pinned && !s.referenced) {
+				evict(s);
+				return;
+			}
+			s.referenced = false;
+			hand = (hand + 1) % maxStates;
+		}
+	}
+
+	/**
+	 * Drops a state from the cache. Edges to it found later are recomputed.
+	 * @param CachedState s - the state
+	 */
+	private void evict(CachedState s) {
+		cache.remove(s.key);
+		s.evicted = true;
+		s.next = null;
+		s.members = null;
+		s.key = null;
+		evictions++;
+	}
+}
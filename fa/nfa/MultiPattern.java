@@ -0,0 +1,111 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import fa.State;
+import fa.dfa.CompiledDFA;
+import fa.dfa.MultiDFA;
+
+/**
+ * Joins many NFAs into one so they can be determinized and matched
+ * together. The union has a new start state, named start, with an
+ * e transition to each pattern's start state, and pattern i's states
+ * are renamed to i:name so the names of different patterns can't clash.
+ * Only the single character transitions of the patterns are copied.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class MultiPattern {
+
+	private MultiPattern() {
+	}
+
+	/**
+	 * Builds the union of the patterns
+	 * @param List<? extends NFA> patterns - the patterns, their index is their id
+	 * @return NFA - a new NFA accepting the strings any of them accepts
+	 * @throws IllegalStateException if a pattern has range transitions
+	 */
+	public static NFA union(List<? extends NFA> patterns) {
+		NFA ret = new NFA();
+		ret.addStartState("start");
+		List<String> from = new ArrayList<String>();
+		List<Character> on = new ArrayList<Character>();
+		List<String> to = new ArrayList<String>();
+		for (int i = 0; i < patterns.size(); i++) {
+			NFA p = patterns.get(i);
+			//only the single character transitions are copied
+			p.requireNoRanges();
+			String prefix = i + ":";
+			for (State s : p.getStates()) {
+				if (p.getFinalStates().contains(s)) {
+					ret.addFinalState(prefix + s.getName());
+				} else {
+					ret.addState(prefix + s.getName());
+				}
+			}
+			if (p.getStartState() == null) {
+				continue;
+			}
+			from.add("start");
+			on.add('e');
+			to.add(prefix + p.getStartState().getName());
+			for (State s : p.getStates()) {
+				for (char c : p.getABC()) {
+					Set<NFAState> targets = p.getToState((NFAState) s, c);
+					if (targets != null) {
+						for (NFAState t : targets) {
+							from.add(prefix + s.getName());
+							on.add(c);
+							to.add(prefix + t.getName());
+						}
+					}
+				}
+			}
+		}
+		char[] symbols = new char[on.size()];
+		for (int i = 0; i < symbols.length; i++) {
+			symbols[i] = on.get(i);
+		}
+		ret.addTransitions(from.toArray(new String[0]), symbols, to.toArray(new String[0]));
+		return ret;
+	}
+
+	/**
+	 * Determinizes the union of the patterns once and tags each DFA
+	 * state with the ids of the patterns whose final states it contains
+	 * @param List<? extends NFA> patterns - the patterns, their index is their id
+	 * @return MultiDFA - the tagged, compiled DFA
+	 * @throws IllegalStateException if a pattern has range transitions
+	 */
+	public static MultiDFA compile(List<? extends NFA> patterns) {
+		NFA union = union(patterns);
+		List<NFAState> states = union.stateList();
+		//union adds the start state, then each pattern's states in order,
+		//so that is also the order of their ids
+		int[] patternOf = new int[states.size()];
+		patternOf[0] = -1;
+		int id = 1;
+		for (int i = 0; i < patterns.size(); i++) {
+			for (int j = 0; j < patterns.get(i).getStates().size(); j++) {
+				patternOf[id++] = i;
+			}
+		}
+		SubsetConstruction subsets = new SubsetConstruction(union, false, null);
+		subsets.run();
+		//toDFA adds the subsets in order, so compiled state i is subset i
+		CompiledDFA dfa = subsets.toDFA().compile();
+		BitSet[] tags = new BitSet[subsets.size()];
+		for (int i = 0; i < tags.length; i++) {
+			tags[i] = new BitSet();
+			for (int s : subsets.subset(i)) {
+				if (union.getFinalStates().contains(states.get(s))) {
+					tags[i].set(patternOf[s]);
+				}
+			}
+		}
+		return new MultiDFA(dfa, tags, patterns.size());
+	}
+}
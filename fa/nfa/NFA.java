@@ -1,13 +1,21 @@
 package fa.nfa;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import fa.State;
+import fa.Transition;
 import fa.dfa.DFA;
-import fa.dfa.DFAState;
+import fa.dfa.IntervalDFA;
 
 /**
  * March 25, 2021
@@ -22,9 +30,28 @@ public class NFA implements NFAInterface {
 	private Set<NFAState> F;
 	private Set<Character> sigma;
 	private NFAState q0;
+	//the states of Q indexed by their id
+	private List<NFAState> stateList;
+	//the states of Q by name
+	private Map<String, NFAState> byName;
+	//e closures of the states, null until needed or after the machine changes
+	private ClosureIndex closures;
+	//the last bitset simulator built and the modCount it was built at
+	private NFASimulator simulator;
+	private int simulatorModCount;
+	//counts the changes made to the machine
+	private int modCount;
+	//the last DFA built and the modCount it was built at
+	private DFA dfa;
+	private int dfaModCount;
+	//the last interval DFA built and the modCount it was built at
+	private IntervalDFA intervalDFA;
+	private int intervalModCount;
 	
 	public NFA() {
 		Q = new LinkedHashSet<NFAState>();
+		stateList = new ArrayList<NFAState>();
+		byName = new HashMap<String, NFAState>();
 		F = new LinkedHashSet<NFAState>();
 		sigma = new LinkedHashSet<Character>();
 	}
@@ -41,11 +68,11 @@ public class NFA implements NFAInterface {
 		//checks if the state is a new state
 		if (state == null) {
 			//creates and adds the new state
-			state = new NFAState(name);
-			Q.add(state);
+			state = newState(name);
 		}
 		//sets state as start state
 		q0 = state;
+		modCount++;
 	}
 
 	/**
@@ -59,8 +86,7 @@ public class NFA implements NFAInterface {
 		//checks if the state is a new state
 		if (state == null) {
 			//creates and adds new state
-			state = new NFAState(name);
-			Q.add(state);
+			state = newState(name);
 		}
 	}
 	
@@ -75,8 +101,7 @@ public class NFA implements NFAInterface {
 		//checks if the state is a new state
 		if (state == null) {
 			//creates and adds new state to main state list and final state list
-			state = new NFAState(name);
-			Q.add(state);
+			state = newState(name);
 			F.add(state);
 		}
 	}
@@ -99,12 +124,105 @@ public class NFA implements NFAInterface {
 		}
 		//adds to the fromState's delta map
 		from.addTransition(onSymb, to);
+		modCount++;
+		//new free transitions change the e closures
+		if (onSymb == 'e') {
+			closures = null;
+		}
 		//adds to the list of symbols used in the machine
 		if(!sigma.contains(onSymb)){
 			sigma.add(onSymb);
 		}
 	}
 	
+	/**
+	 * Adds a transition on every code point from lo to hi, such as
+	 * 'a' to 'z' for [a-z]. Range transitions are only supported by
+	 * getIntervalDFA, and are kept by withoutEpsilons and reduce. A
+	 * range that covers e reads it as a symbol, which is the only way
+	 * to match the character e, since a single character transition on
+	 * e is a free transition in getIntervalDFA as well. getABC leaves them out, and getDFA,
+	 * accepts, LazyDFA, IncrementalDFA, TextSearch and MultiPattern
+	 * throw an IllegalStateException on an NFA that has any.
+	 * @param STRING fromState - name of the state the transition is from
+	 * @param INT lo - the first code point of the range
+	 * @param INT hi - the last code point of the range
+	 * @param STRING toState - name of the state transition ends on
+	 * @throws IllegalArgumentException if lo to hi is not a range of code points
+	 */
+	public void addRangeTransition(String fromState, int lo, int hi, String toState) {
+		//checks that states exists
+		NFAState from = alreadyExists(fromState);
+		NFAState to = alreadyExists(toState);
+		if (from == null || to == null) {
+			System.out.println("One of those states doesn't exist!");
+			return;
+		}
+		from.addRangeTransition(lo, hi, to);
+		modCount++;
+	}
+	
+	/**
+	 * Adds a free transition. It is stored as a single character
+	 * transition on e, the same as addTransition(fromState, 'e', toState),
+	 * and both getDFA and getIntervalDFA follow it without reading a symbol.
+	 * @param STRING fromState - name of the state the transition is from
+	 * @param STRING toState - name of the state transition ends on
+	 */
+	public void addEpsilonTransition(String fromState, String toState) {
+		addTransition(fromState, 'e', toState);
+	}
+	
+	/**
+	 * Adds states to the main list, skipping the ones that already exist
+	 * @param Iterable<String> names - names of the states
+	 */
+	@Override
+	public void addStates(Iterable<String> names) {
+		for (String name : names) {
+			addState(name);
+		}
+	}
+	
+	/**
+	 * Adds states to the list of final states and all states
+	 * @param Iterable<String> names - names of the states
+	 */
+	@Override
+	public void addFinalStates(Iterable<String> names) {
+		for (String name : names) {
+			addFinalState(name);
+		}
+	}
+	
+	/**
+	 * Adds every transition in the batch, in order
+	 * @param Iterable<Transition> transitions - the transitions to add
+	 */
+	@Override
+	public void addTransitions(Iterable<? extends Transition> transitions) {
+		for (Transition t : transitions) {
+			addTransition(t.getFromState(), t.getOnSymb(), t.getToState());
+		}
+	}
+	
+	/**
+	 * Adds every transition in the batch, transition i going from
+	 * fromStates[i] on onSymbs[i] to toStates[i]
+	 * @param String[] fromStates - names of the states the transitions are from
+	 * @param char[] onSymbs - the symbols the transitions happen on
+	 * @param String[] toStates - names of the states the transitions end on
+	 */
+	@Override
+	public void addTransitions(String[] fromStates, char[] onSymbs, String[] toStates) {
+		if (fromStates.length != onSymbs.length || onSymbs.length != toStates.length) {
+			throw new IllegalArgumentException("Transition arrays have different lengths");
+		}
+		for (int i = 0; i < onSymbs.length; i++) {
+			addTransition(fromStates[i], onSymbs[i], toStates[i]);
+		}
+	}
+	
 	/**
 	 * Getter for Q (All States)
 	 * @return Set<NFAState> - a set of all states that FA has
@@ -142,80 +260,167 @@ public class NFA implements NFAInterface {
 	}
 
 	/**
-	 * Converts our NFA into a DFA
+	 * Converts our NFA into a DFA. The DFA is built once and the same
+	 * instance is returned until a state or transition is added, so it
+	 * should not be changed by the caller. Threads calling this at the
+	 * same time wait for one conversion instead of each doing their own.
 	 * @return DFA - the new DFA converted from our NFA
+	 * @throws IllegalStateException if the NFA has range transitions
 	 */
 	@Override
-	public DFA getDFA() {
-		//creates a new DFA
-		DFA dfa = new DFA();
-		//creates the queue for BFS and set of visited state so we don't have repeated states
-		Queue<Set<NFAState>> queue = new LinkedList<Set<NFAState>>();
-		Set<Set<NFAState>> visited = new LinkedHashSet<Set<NFAState>>();
-		//gets the new start state for the DFA
-		Set<NFAState> startState = eClosure((NFAState) getStartState());
-		//checks if start state is a final state
-		if (isFinal(startState)) {
-			dfa.addFinalState(startState.toString());
+	public synchronized DFA getDFA() {
+		if (dfa == null || dfaModCount != modCount) {
+			convert(null, null);
 		}
-		//sets DFA's start state and adds it to the queue and the visited set
-		dfa.addStartState(startState.toString());
-		queue.add(startState);
-		visited.add(startState);
-		//goes though the queue set to add all elements from NFA to DFA
-		while (!queue.isEmpty()) {
-			//takes oldest state from the queue
-			Set<NFAState> currStates = queue.remove();
-			//goes though each transition symbol 
-			for (Character c : sigma) {
-				//skips e transitions
-				if (c == 'e') {
-					continue;
-				}
-				//starts the transition state that is used for the rest of this method
-				Set<NFAState> tranState = new LinkedHashSet<NFAState>();
-				//goes through each individual state in the set from the queue
-				for (NFAState state : currStates) {
-					//checks if the state has a transition on this char
-					if (state.getTo(c) != null) {
-						//adds all the possible states it could go to
-						tranState.addAll(state.getTo(c));
-						//loops through tranState and runs eclosure on each state to add free transitions
-						for (NFAState s : tranState) {
-							//adds the resulting states back into tranState
-							tranState.addAll(eClosure(s));
-						}
-					}
-				}
-				//checks if the same state has been visited, but the states are in different orders
-				Set<NFAState> equivilantState = equalState(tranState, visited);
-				if (equivilantState != null) {
-					//change the new state to the order of the old equivalent one
-					tranState = equivilantState;
-				}
-				//checks if state has already been visited
-				if (!visited.contains(tranState)) {
-					//if not, add to the queue then add to visisted
-					queue.add(tranState);
-					visited.add(tranState);
-				}
-				//checks if the state is already in the DFA
-				if (!isDFAState(tranState.toString(), dfa)) {
-					//if not, check if it's final or not and add appropriately
-					if (isFinal(tranState)) {
-						dfa.addFinalState(tranState.toString());
-					} else {
-						dfa.addState(tranState.toString());
-					}
-				}
-				//add the dfa transition
-				dfa.addTransition(currStates.toString(), c, tranState.toString());
+		return dfa;
+	}
+	
+	/**
+	 * Converts our NFA into a DFA, working on each level of the BFS
+	 * in parallel. The result is the same DFA getDFA() builds, and
+	 * the two share the cached instance.
+	 * @param ForkJoinPool pool - the pool to run the conversion on
+	 * @return DFA - the new DFA converted from our NFA
+	 */
+	public synchronized DFA getDFA(ForkJoinPool pool) {
+		if (dfa == null || dfaModCount != modCount) {
+			convert(pool, null);
+		}
+		return dfa;
+	}
+	
+	/**
+	 * Converts our NFA into a DFA, counting and timing the conversion.
+	 * It converts even if the cached DFA is current, so the stats
+	 * describe a real conversion, and caches the result.
+	 * @param ConversionStats stats - where to add the numbers, null to just call getDFA()
+	 * @return DFA - the new DFA converted from our NFA
+	 */
+	public synchronized DFA getDFA(ConversionStats stats) {
+		return stats == null ? getDFA() : convert(null, stats);
+	}
+	
+	/**
+	 * Converts our NFA into a DFA in parallel, counting and timing
+	 * the conversion like getDFA(ConversionStats)
+	 * @param ForkJoinPool pool - the pool to run the conversion on
+	 * @param ConversionStats stats - where to add the numbers, null to just call getDFA(pool)
+	 * @return DFA - the new DFA converted from our NFA
+	 */
+	public synchronized DFA getDFA(ForkJoinPool pool, ConversionStats stats) {
+		return stats == null ? getDFA(pool) : convert(pool, stats);
+	}
+	
+	/**
+	 * Runs the BFS over subsets of state ids, then names the subsets.
+	 * The conversion is measured if stats are given or if a flight
+	 * recording has the conversion event enabled.
+	 * @param ForkJoinPool pool - the pool to run on, null to run on this thread
+	 * @param ConversionStats stats - where to add the numbers, or null
+	 * @return DFA - the new DFA, which is also cached
+	 */
+	private DFA convert(ForkJoinPool pool, ConversionStats stats) {
+		ConversionEvent event = new ConversionEvent();
+		//each conversion is measured on its own so the event only gets its numbers
+		ConversionStats local = stats != null || event.isEnabled() ? new ConversionStats() : null;
+		event.begin();
+		SubsetConstruction subsets = new SubsetConstruction(this, false, local);
+		if (pool == null) {
+			subsets.run();
+		} else {
+			subsets.run(pool);
+		}
+		cacheDFA(subsets.toDFA());
+		event.end();
+		if (local != null) {
+			if (stats != null) {
+				stats.add(local);
+			}
+			if (event.shouldCommit()) {
+				event.nfaStates = stateList.size();
+				event.parallel = pool != null;
+				event.set(local);
+				event.commit();
 			}
 		}
-		//returns the newly made dfa
 		return dfa;
 	}
 	
+	/**
+	 * Builds an equivalent NFA without e transitions. States on an e
+	 * cycle are merged, each remaining state takes over the symbol
+	 * transitions of its e closure, and it is final if the closure has
+	 * a final state. Converting or simulating the result needs no
+	 * closures. This NFA is not changed.
+	 * @return NFA - the new e free NFA
+	 */
+	public NFA withoutEpsilons() {
+		return EpsilonElimination.of(this);
+	}
+
+	/**
+	 * Builds a smaller NFA with the same language, to be determinized
+	 * instead of this one. States not on a path from the start state
+	 * to a final state are dropped, then bisimilar states are merged,
+	 * e transitions included, and named after the first of them.
+	 * The start state is always kept. This NFA is not changed.
+	 * @return NFA - the reduced NFA
+	 */
+	public NFA reduce() {
+		return Reduction.of(this);
+	}
+	
+	/**
+	 * Converts our NFA into a DFA over code points whose transitions
+	 * are intervals. Both the single character and the range transitions
+	 * are used, and the subset construction runs over the disjoint
+	 * intervals they split the code points into rather than over each
+	 * character. Single character transitions on e are free transitions
+	 * here too, so the character e is only read by a range transition
+	 * that covers it. Like getDFA the result is cached until the machine changes.
+	 * @return IntervalDFA - the new DFA converted from our NFA
+	 */
+	public synchronized IntervalDFA getIntervalDFA() {
+		if (intervalDFA == null || intervalModCount != modCount) {
+			SubsetConstruction subsets = new SubsetConstruction(this, true, null);
+			subsets.run();
+			intervalDFA = subsets.toIntervalDFA();
+			intervalModCount = modCount;
+		}
+		return intervalDFA;
+	}
+	
+	/**
+	 * Remembers a DFA as the conversion of the machine as it is now
+	 * @param DFA converted - the DFA
+	 */
+	private void cacheDFA(DFA converted) {
+		dfa = converted;
+		dfaModCount = modCount;
+	}
+	
+	/**
+	 * Simulates the NFA on the input without converting it to a DFA,
+	 * tracking every state the machine could be in at once
+	 * @param CharSequence s - the input, where e alone is the empty string
+	 * @return boolean - true if s is in the language of the NFA
+	 * @throws IllegalStateException if the NFA has no start state or has range transitions
+	 */
+	@Override
+	public boolean accepts(CharSequence s) {
+		if (q0 == null) {
+			throw new IllegalStateException("The NFA has no start state");
+		}
+		//any change, including a new start state, makes the simulator stale
+		NFASimulator sim = simulator;
+		if (sim == null || simulatorModCount != modCount) {
+			sim = new NFASimulator(this);
+			simulator = sim;
+			simulatorModCount = modCount;
+		}
+		return sim.accepts(s);
+	}
+	
 	/**
 	 * Getter for the state the given state transitions to on the given symbol
 	 * @param NFAState from - The state we want the transition from
@@ -230,30 +435,12 @@ public class NFA implements NFAInterface {
 	/**
 	 * Gets all the states you can get to on a e transition 
 	 * @param NFAState from - The state we want to trace the e Transitions 
-	 * @return Set<NFAState> - returns a Set of nfa states that you can visit off e transition
+	 * @return Set<NFAState> - returns a new Set of nfa states that you can visit off e transition,
+	 * in the order a depth first search finds them, which the caller is free to change
 	 */
 	@Override
 	public Set<NFAState> eClosure(NFAState s) {
-		//creates sets to keep track of where we have been and where we can get to
-		Set<NFAState> eStates = new LinkedHashSet<NFAState>();
-		Set<NFAState> visited = new LinkedHashSet<NFAState>();
-		//adds the given state to both
-		eStates.add(s);
-		visited.add(s);
-		//gets all states s can get to using e transitions
-		Set<NFAState> setOfStates = s.getTo('e');
-		//checks if there are any states returned
-		if (setOfStates != null) {
-			//loops through each state gotten from the e transitions
-			for (NFAState state : setOfStates) {
-				//recursively calls eclosure on each new state and adds to eStates
-				//in the end this leaves us with all possible states that can be visited
-				//for free from the given state s
-				eStates.addAll(eClosure(state, visited));
-			}
-		}
-		//System.out.println(eStates);
-		return eStates;
+		return eClosure(s, new LinkedHashSet<NFAState>());
 	}
 	
 	/**
@@ -268,93 +455,129 @@ public class NFA implements NFAInterface {
 		Set<NFAState> eStates = new LinkedHashSet<NFAState>();
 		eStates.add(s);
 		visited.add(s);
-		//gets any transitions on e
-		Set<NFAState> setOfStates = s.getTo('e');
-		//makes sure those states exist
-		if (setOfStates != null) {
-			//loops through all the states
-			for (NFAState state : setOfStates) {
-				//checks if we've already done the eClosure on that state
-				if (!visited.contains(state)) {
-					//recursively calls eClosure on each new state
-					eStates.addAll(eClosure(state, visited));
-				}
+		//depth first search with our own stack of the e transitions left to follow
+		Deque<Iterator<NFAState>> stack = new ArrayDeque<Iterator<NFAState>>();
+		pushETransitions(s, stack);
+		while (!stack.isEmpty()) {
+			Iterator<NFAState> it = stack.peek();
+			if (!it.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			NFAState state = it.next();
+			//checks if we've already done the eClosure on that state
+			if (visited.add(state)) {
+				eStates.add(state);
+				pushETransitions(state, stack);
 			}
 		}
 		return eStates;
 	}
 	
 	/**
-	 * Utility that checks if a state already exits in Q
-	 * @param String name - the name of the state
-	 * @return NFAState - returns the state if it already exists, or null if it does not.
+	 * Utility that pushes the e transitions of a state onto the search stack
+	 * @param NFAState s - the state
+	 * @param Deque<Iterator<NFAState>> stack - the search stack
 	 */
-	private NFAState alreadyExists(String name) {
-		NFAState existing = null;
-		//loops though all states in Q to check if the passed name is already a state
-		for(NFAState state : Q) {
-			if(state.getName().equals(name)) {
-				existing = state;
-				break;
-			}
+	private void pushETransitions(NFAState s, Deque<Iterator<NFAState>> stack) {
+		Set<NFAState> setOfStates = s.getTo('e');
+		//makes sure those states exist
+		if (setOfStates != null) {
+			stack.push(setOfStates.iterator());
 		}
-		return existing;
 	}
 	
 	/**
-	 * Utility that checks if the state is a final state
-	 * @param Set<NFAState> states - A set of states to test
-	 * @return Boolean - if it contains a final state returns true else false
+	 * Getter for the e closure index, building it if the machine changed
+	 * @return ClosureIndex - the closures of the current machine
 	 */
-	private boolean isFinal(Set<NFAState> states) {
-		boolean fin = false;
-		//loops though all states in Q 
-		for (NFAState state : states) {
-			if (F.contains(state)) {
-				fin = true;
-			}
+	ClosureIndex closureIndex() {
+		//the index is immutable, so two threads building it at once is harmless
+		ClosureIndex ret = closures;
+		if (ret == null) {
+			ret = new ClosureIndex(stateList());
+			closures = ret;
 		}
-		return fin;
+		return ret;
 	}
-	
+
 	/**
-	 * Utility that checks a state is already in the DFA
-	 * @param STRING - nstate the name of a state
-	 * @param DFA dfa - the dfa to check for states
-	 * @return Boolean - returns true or false if the state is in the DFA or not
-	 */
-	private boolean isDFAState(String nstate, DFA dfa) {
-		boolean exists = false;
-		//creates the set to check against
-		Set<DFAState> dfaStates = dfa.getStates();
-		//loops though to check all states against name
-		for (DFAState dstate : dfaStates) {
-			if(nstate.equals(dstate.getName())) {
-				exists = true;
-				break;
+	 * Utility that rejects range transitions where only the single
+	 * character transitions are read, instead of ignoring them
+	 * @throws IllegalStateException if a state has a range transition
+	 */
+	void requireNoRanges() {
+		for (NFAState s : stateList) {
+			if (s.getRangeCount() > 0) {
+				throw new IllegalStateException("State " + s.getName()
+						+ " has a range transition, only getIntervalDFA supports them");
 			}
 		}
-		return exists;
+	}
+
+	/**
+	 * @return boolean - true if the e closure index is built for the current machine
+	 */
+	boolean hasClosureIndex() {
+		return closures != null;
 	}
 	
 	/**
-	 * Utility that checks if two sates are the same but in different orders
-	 * @param Set<NFAState> testState - the first state
-	 * @parm Set<Set<NFAState>> visited - set of sets to test against
-	 * @return Set<NFAState> the equivalent NFAstate, or null if one doesn't exist
-	 */
-	private Set<NFAState> equalState(Set<NFAState> testState, Set<Set<NFAState>> visited) {
-		Set<NFAState> equivilantState = null;
-		//loops through all sets of states in visited
-		for (Set<NFAState> state : visited) {
-			//checks if they're equal
-			if(testState.equals(state)) {
-				//if so, return the visited state
-				equivilantState = state;
-				break;
-			}
-		}
-		return equivilantState;
+	 * @param String name - the name of a state
+	 * @return boolean - true if Q has a state with that name
+	 */
+	boolean hasState(String name) {
+		return byName.containsKey(name);
+	}
+	
+	/**
+	 * @param String name - the name of a state
+	 * @return NFAState - the state with that name, or null if there is none
+	 */
+	NFAState state(String name) {
+		return alreadyExists(name);
+	}
+	
+	/**
+	 * Getter for the change counter, which goes up whenever a state
+	 * or transition is added
+	 * @return int - the number of changes made so far
+	 */
+	int modCount() {
+		return modCount;
+	}
+	
+	/**
+	 * Utility that checks if a state already exits in Q
+	 * @param String name - the name of the state
+	 * @return NFAState - returns the state if it already exists, or null if it does not.
+	 */
+	private NFAState alreadyExists(String name) {
+		return byName.get(name);
+	}
+	
+	/**
+	 * Creates a new state numbered by its position in Q and adds it to Q
+	 * @param String name - the name of the state
+	 * @return NFAState - the new state
+	 */
+	private NFAState newState(String name) {
+		NFAState state = new NFAState(name, stateList.size());
+		stateList.add(state);
+		byName.put(name, state);
+		Q.add(state);
+		//the closure index is sized by the number of states
+		closures = null;
+		modCount++;
+		return state;
+	}
+	
+	/**
+	 * Getter for the states indexed by their id
+	 * @return List<NFAState> - read only view of the states in Q order
+	 */
+	List<NFAState> stateList() {
+		return Collections.unmodifiableList(stateList);
 	}
 
 }
@@ -15,6 +15,14 @@ public interface NFAInterface extends FAInterface {
 	 */
 	public abstract DFA getDFA(); 
 	
+	/**
+	 * Simulates the NFA on input s directly, without
+	 * building the equivalent DFA
+	 * @param s - the input string, where e stands for the empty string
+	 * @return true if s in the language of the NFA and false otherwise
+	 */
+	public abstract boolean accepts(CharSequence s);
+	
 	/**
 	 * Return delta entries
 	 * @param from - the source state
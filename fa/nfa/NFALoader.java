@@ -0,0 +1,286 @@
+package fa.nfa;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.StringTokenizer;
+
+/**
+ * Reads the NFADriver input format through a FileChannel:
+ * the final states, the start state, the other states and the
+ * transitions, one line each, followed by one test string per line.
+ * The transition line is tokenized straight from the bytes and handed
+ * to the NFA in batches, so it is never held as one String, and the
+ * test strings are read one at a time as they are asked for.
+ * Lines are decoded with the platform charset like Scanner does,
+ * which must be ASCII compatible.
+ * @author Ben Harper and Andrew Haddon
+ */
+public class NFALoader implements Closeable {
+
+	//transitions handed to the NFA at once
+	private static final int BATCH = 8192;
+
+	private final FileChannel channel;
+	private final ByteBuffer buf;
+	private final Charset charset;
+	//the current line's bytes
+	private byte[] line;
+	private int lineLen;
+	//whitespace only test lines that are kept until a real one follows them
+	private final Deque<String> blankLines;
+	//one letter state names, so each is only made once
+	private final String[] names;
+
+	/**
+	 * Opens the file for reading
+	 * @param Path file - the input file
+	 * @throws IOException if the file can't be opened
+	 */
+	public NFALoader(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		buf = ByteBuffer.allocate(1 << 16);
+		buf.flip();
+		charset = Charset.defaultCharset();
+		line = new byte[256];
+		blankLines = new ArrayDeque<String>();
+		names = new String[128];
+	}
+
+	/**
+	 * Reads the four lines that describe the NFA
+	 * @return NFA - the machine they describe
+	 * @throws IOException if the file can't be read
+	 */
+	public NFA readNFA() throws IOException {
+		NFA nfa = new NFA();
+		//the first line is the set of final states
+		StringTokenizer tk = new StringTokenizer(nextLine().trim(), " ");
+		while (tk.hasMoreTokens()) {
+			nfa.addFinalState(tk.nextToken());
+		}
+		//the second line is the start state
+		nfa.addStartState(nextLine().trim());
+		//the third line is the other states
+		tk = new StringTokenizer(nextLine().trim(), " ");
+		while (tk.hasMoreTokens()) {
+			nfa.addState(tk.nextToken());
+		}
+		readTransitions(nfa);
+		return nfa;
+	}
+
+	/**
+	 * Reads the next test string. Like Scanner's hasNext and nextLine,
+	 * lines are only returned while some non whitespace is left in the file.
+	 * @return String - the next test string, or null when there are no more
+	 * @throws IOException if the file can't be read
+	 */
+	public String nextTestString() throws IOException {
+		if (!blankLines.isEmpty()) {
+			return blankLines.poll();
+		}
+		while (readLine()) {
+			String s = new String(line, 0, lineLen, charset);
+			if (!isBlank(s)) {
+				if (blankLines.isEmpty()) {
+					return s;
+				}
+				//the held back lines come first
+				blankLines.add(s);
+				return blankLines.poll();
+			}
+			blankLines.add(s);
+		}
+		//only whitespace was left
+		blankLines.clear();
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Tokenizes the transition line on spaces straight from the file,
+	 * each token being a from state, a symbol and a to state
+	 * @param NFA nfa - the machine to add the transitions to
+	 * @throws IOException if the file can't be read
+	 */
+	private void readTransitions(NFA nfa) throws IOException {
+		String[] from = new String[BATCH];
+		char[] onSymb = new char[BATCH];
+		String[] to = new String[BATCH];
+		int count = 0;
+		int b = read();
+		if (b < 0) {
+			throw new NoSuchElementException("No line found");
+		}
+		byte[] token = new byte[16];
+		int tokenLen = 0;
+		boolean ascii = true;
+		while (true) {
+			boolean endOfLine = b < 0 || b == '\n' || b == '\r';
+			if (endOfLine || b == ' ') {
+				if (tokenLen > 0) {
+					char[] tran = ascii ? asciiChars(token, tokenLen)
+							: new String(token, 0, tokenLen, charset).toCharArray();
+					if (tran.length < 3) {
+						throw new IllegalArgumentException("Malformed transition "
+								+ new String(tran));
+					}
+					from[count] = name(tran[0]);
+					onSymb[count] = tran[1];
+					to[count++] = name(tran[2]);
+					if (count == BATCH) {
+						nfa.addTransitions(from, onSymb, to);
+						count = 0;
+					}
+					tokenLen = 0;
+					ascii = true;
+				}
+				if (endOfLine) {
+					break;
+				}
+			} else {
+				if (tokenLen == token.length) {
+					token = Arrays.copyOf(token, tokenLen * 2);
+				}
+				token[tokenLen++] = (byte) b;
+				ascii &= b < 0x80;
+			}
+			b = read();
+		}
+		if (b == '\r') {
+			skipNewline();
+		}
+		if (count > 0) {
+			nfa.addTransitions(Arrays.copyOf(from, count),
+					Arrays.copyOf(onSymb, count), Arrays.copyOf(to, count));
+		}
+	}
+
+	/**
+	 * Reads the next line, failing like Scanner.nextLine at the end of the file
+	 * @return String - the line without its line break
+	 * @throws IOException if the file can't be read
+	 */
+	private String nextLine() throws IOException {
+		if (!readLine()) {
+			throw new NoSuchElementException("No line found");
+		}
+		return new String(line, 0, lineLen, charset);
+	}
+
+	/**
+	 * Reads bytes up to the next \n, \r\n or \r into line
+	 * @return boolean - false if the file had already ended
+	 * @throws IOException if the file can't be read
+	 */
+	private boolean readLine() throws IOException {
+		lineLen = 0;
+		int b = read();
+		if (b < 0) {
+			return false;
+		}
+		while (b >= 0 && b != '\n' && b != '\r') {
+			if (lineLen == line.length) {
+				line = Arrays.copyOf(line, lineLen * 2);
+			}
+			line[lineLen++] = (byte) b;
+			b = read();
+		}
+		if (b == '\r') {
+			skipNewline();
+		}
+		return true;
+	}
+
+	/**
+	 * Skips the \n of a \r\n line break
+	 * @throws IOException if the file can't be read
+	 */
+	private void skipNewline() throws IOException {
+		if (!buf.hasRemaining() && !fill()) {
+			return;
+		}
+		if (buf.get(buf.position()) == '\n') {
+			buf.get();
+		}
+	}
+
+	/**
+	 * Reads one byte
+	 * @return int - the byte from 0 to 255, or -1 at the end of the file
+	 * @throws IOException if the file can't be read
+	 */
+	private int read() throws IOException {
+		if (!buf.hasRemaining() && !fill()) {
+			return -1;
+		}
+		return buf.get() & 0xFF;
+	}
+
+	/**
+	 * Refills the buffer from the channel
+	 * @return boolean - false at the end of the file
+	 * @throws IOException if the file can't be read
+	 */
+	private boolean fill() throws IOException {
+		buf.clear();
+		int n = 0;
+		while (n == 0) {
+			n = channel.read(buf);
+		}
+		buf.flip();
+		return n > 0;
+	}
+
+	/**
+	 * Gets the name of a one letter state
+	 * @param char c - the letter
+	 * @return String - the name, shared for ASCII letters
+	 */
+	private String name(char c) {
+		if (c >= names.length) {
+			return String.valueOf(c);
+		}
+		String ret = names[c];
+		if (ret == null) {
+			ret = String.valueOf(c);
+			names[c] = ret;
+		}
+		return ret;
+	}
+
+	private static char[] asciiChars(byte[] bytes, int len) {
+		char[] ret = new char[len];
+		for (int i = 0; i < len; i++) {
+			ret[i] = (char) bytes[i];
+		}
+		return ret;
+	}
+
+	/**
+	 * Utility that checks if a line is only whitespace, as Scanner sees it
+	 * @param String s - the line
+	 * @return boolean - true if there is no token in it
+	 */
+	private static boolean isBlank(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (!Character.isWhitespace(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
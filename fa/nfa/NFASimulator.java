@@ -0,0 +1,109 @@
+package fa.nfa;
+
+import java.util.Arrays;
+
+/**
+ * Runs an NFA directly on an input by keeping the set of active
+ * states as a bitset over the dense state ids, so membership can be
+ * answered without determinizing. Each step costs at most the size
+ * of the NFA and nothing is allocated per input character. Each thread
+ * reuses its own pair of bitsets, so inputs allocate nothing either
+ * after a thread's first one.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class NFASimulator {
+
+	//the NFA's transitions over state ids
+	private final NFATable nfa;
+	private final int words;
+	//the current and next state sets of each thread
+	private final ThreadLocal<long[][]> sets;
+
+	/**
+	 * Reads the transitions out of the given NFA
+	 * @param NFA nfa - the machine to simulate
+	 * @throws IllegalStateException if the NFA has no start state
+	 */
+	NFASimulator(NFA nfa) {
+		if (nfa.getStartState() == null) {
+			throw new IllegalStateException("The NFA has no start state");
+		}
+		this.nfa = new NFATable(nfa);
+		int w = (this.nfa.size() + 63) >>> 6;
+		words = w;
+		sets = ThreadLocal.withInitial(() -> new long[][] {new long[w], new long[w]});
+	}
+
+	/**
+	 * Simulates the NFA on the input. As with DFA.accepts,
+	 * the single symbol e stands for the empty string.
+	 * @param CharSequence s - the input
+	 * @return boolean - true if some run of the NFA ends in a final state
+	 */
+	boolean accepts(CharSequence s) {
+		int len = s.length();
+		if (len == 1 && s.charAt(0) == 'e') {
+			len = 0;
+		}
+		long[][] pair = sets.get();
+		long[] curr = pair[0];
+		long[] next = pair[1];
+		Arrays.fill(curr, 0L);
+		addClosure(curr, nfa.start());
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			int col = nfa.column(c);
+			if (col < 0) {
+				return false;
+			}
+			Arrays.fill(next, 0L);
+			boolean any = false;
+			//goes through every active state
+			for (int w = 0; w < words; w++) {
+				long bits = curr[w];
+				while (bits != 0) {
+					int state = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					int[] targets = nfa.targets(state, col);
+					if (targets == null) {
+						continue;
+					}
+					for (int t : targets) {
+						//a state already in next brought its closure with it
+						if ((next[t >>> 6] & (1L << t)) == 0) {
+							addClosure(next, t);
+						}
+						any = true;
+					}
+				}
+			}
+			if (!any) {
+				return false;
+			}
+			long[] tmp = curr;
+			curr = next;
+			next = tmp;
+		}
+		long[] finals = nfa.finals();
+		for (int w = 0; w < words; w++) {
+			if ((curr[w] & finals[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a state and everything reachable from it on e to a state set
+	 * @param long[] set - the bitset to add to
+	 * @param int state - the state id
+	 */
+	private void addClosure(long[] set, int state) {
+		ClosureIndex closures = nfa.closures();
+		int[] members = closures.members();
+		for (int i = closures.start(state), end = closures.end(state); i < end; i++) {
+			int s = members[i];
+			set[s >>> 6] |= 1L << s;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package fa.nfa;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Set;
@@ -17,6 +18,13 @@ public class NFAState extends fa.State {
 
 	//HashMap to store transitions
 	private HashMap<Character, Set<NFAState>> delta;
+	//dense index of the state inside its NFA, -1 if not owned by one
+	private int id;
+	//range transitions in the order added: code points rangeLow[i] to rangeHigh[i] go to rangeTo[i]
+	private int[] rangeLow;
+	private int[] rangeHigh;
+	private NFAState[] rangeTo;
+	private int rangeCount;
 	
 	/**
 	 * Starts a new nfa state
@@ -24,6 +32,17 @@ public class NFAState extends fa.State {
 	 */
 	public NFAState(String name) {
 		newState(name);
+		id = -1;
+	}
+	
+	/**
+	 * Starts a new nfa state numbered by its owning NFA
+	 * @param String name - the name of the state
+	 * @param int id - the position of the state in the NFA's Q
+	 */
+	NFAState(String name, int id) {
+		newState(name);
+		this.id = id;
 	}
 	
 	/**
@@ -33,6 +52,17 @@ public class NFAState extends fa.State {
 	private void newState(String name){
 		this.name = name;
 		delta = new HashMap<Character, Set<NFAState>>();
+		rangeLow = new int[0];
+		rangeHigh = new int[0];
+		rangeTo = new NFAState[0];
+	}
+	
+	/**
+	 * Getter for the dense index the owning NFA gave this state
+	 * @return int - the position of the state in Q, or -1
+	 */
+	int getId() {
+		return id;
 	}
 	
 	/**
@@ -54,6 +84,59 @@ public class NFAState extends fa.State {
 		delta.put(onSymb, set);
 	}
 	
+	/**
+	 * Adds a transition on every code point from lo to hi. Unlike
+	 * addTransition, e is a real symbol here.
+	 * @param int lo - the first code point of the range
+	 * @param int hi - the last code point of the range
+	 * @param NFAState toState - the state that it goes to on those code points
+	 */
+	public void addRangeTransition(int lo, int hi, NFAState toState){
+		if(lo < 0 || lo > hi || hi > Character.MAX_CODE_POINT){
+			throw new IllegalArgumentException("Invalid code point range " + lo + " to " + hi);
+		}
+		if(rangeCount == rangeTo.length){
+			int size = Math.max(4, rangeCount * 2);
+			rangeLow = Arrays.copyOf(rangeLow, size);
+			rangeHigh = Arrays.copyOf(rangeHigh, size);
+			rangeTo = Arrays.copyOf(rangeTo, size);
+		}
+		rangeLow[rangeCount] = lo;
+		rangeHigh[rangeCount] = hi;
+		rangeTo[rangeCount++] = toState;
+	}
+	
+	/**
+	 * @return int - the number of range transitions
+	 */
+	int getRangeCount() {
+		return rangeCount;
+	}
+	
+	/**
+	 * @param int i - the index of a range transition
+	 * @return int - its first code point
+	 */
+	int getRangeLow(int i) {
+		return rangeLow[i];
+	}
+	
+	/**
+	 * @param int i - the index of a range transition
+	 * @return int - its last code point
+	 */
+	int getRangeHigh(int i) {
+		return rangeHigh[i];
+	}
+	
+	/**
+	 * @param int i - the index of a range transition
+	 * @return NFAState - the state it goes to
+	 */
+	NFAState getRangeTo(int i) {
+		return rangeTo[i];
+	}
+	
 	/**
 	 * Finds all the states this state transitions to on the given symbol 
 	 * @param Char symb - the symbol to be used as the key in the map
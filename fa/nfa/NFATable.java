@@ -0,0 +1,286 @@
+package fa.nfa;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * A snapshot of an NFA's transition function over its dense state ids,
+ * shared by the code that determinizes or simulates the machine.
+ * The e symbol is not a column, its transitions are read through
+ * the NFA's closure index instead.
+ * A table has a column either for each symbol of the alphabet, or, when
+ * made by intervals, for each of the disjoint code point intervals the
+ * symbol and range transitions split the code points into. A single
+ * character transition on e is free in both kinds of table, so in an
+ * interval table the character e is only read by a range that covers it.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class NFATable {
+
+	//the NFA's states, indexed by id
+	private final List<NFAState> states;
+	//the alphabet without the e symbol, in the NFA's order, null in an interval table
+	private final char[] symbols;
+	//columnOf[c] = index of symbol c in symbols, -1 if c is not in the alphabet
+	private final int[] columnOf;
+	//starts[i] = first code point of interval i, null in a symbol table
+	private final int[] starts;
+	//the number of columns
+	private final int width;
+	//delta[state][column] = ids reached on that symbol in insertion order, null if none
+	private final int[][][] delta;
+	//bit s is set if state s is final
+	private final long[] finals;
+	//the NFA's shared epsilon closures
+	private final ClosureIndex closures;
+	private final int start;
+
+	/**
+	 * Reads the states and transitions out of the given NFA
+	 * @param NFA nfa - the machine
+	 * @throws IllegalStateException if the NFA has range transitions, which have no symbol column
+	 */
+	NFATable(NFA nfa) {
+		nfa.requireNoRanges();
+		states = nfa.stateList();
+		int n = states.size();
+		int max = -1;
+		StringBuilder abc = new StringBuilder();
+		for (char c : nfa.getABC()) {
+			//skips e transitions
+			if (c != 'e') {
+				abc.append(c);
+				max = Math.max(max, c);
+			}
+		}
+		symbols = abc.toString().toCharArray();
+		columnOf = new int[max + 1];
+		Arrays.fill(columnOf, -1);
+		for (int j = 0; j < symbols.length; j++) {
+			columnOf[symbols[j]] = j;
+		}
+		starts = null;
+		width = symbols.length;
+		delta = new int[n][][];
+		for (NFAState state : states) {
+			int[][] row = new int[symbols.length][];
+			for (int j = 0; j < symbols.length; j++) {
+				row[j] = toIds(state.getTo(symbols[j]));
+			}
+			delta[state.getId()] = row;
+		}
+		finals = finals(nfa, n);
+		closures = nfa.closureIndex();
+		NFAState q0 = (NFAState) nfa.getStartState();
+		start = q0 == null ? -1 : q0.getId();
+	}
+
+	/**
+	 * Reads the states and transitions out of the given NFA, with a column
+	 * for each interval of code points that all the transitions treat alike
+	 * @param NFA nfa - the machine
+	 * @param boolean intervals - must be true, tells the constructors apart
+	 */
+	NFATable(NFA nfa, boolean intervals) {
+		states = nfa.stateList();
+		int n = states.size();
+		symbols = null;
+		columnOf = null;
+		//every label [lo, hi] starts an interval at lo and another after hi
+		int[] bounds = new int[16];
+		int count = 0;
+		bounds[count++] = 0;
+		for (NFAState state : states) {
+			for (char c : nfa.getABC()) {
+				if (c != 'e' && state.getTo(c) != null) {
+					bounds = grow(bounds, count + 2);
+					bounds[count++] = c;
+					bounds[count++] = c + 1;
+				}
+			}
+			for (int i = 0; i < state.getRangeCount(); i++) {
+				bounds = grow(bounds, count + 2);
+				bounds[count++] = state.getRangeLow(i);
+				bounds[count++] = state.getRangeHigh(i) + 1;
+			}
+		}
+		Arrays.sort(bounds, 0, count);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (bounds[i] <= Character.MAX_CODE_POINT && (unique == 0 || bounds[i] != bounds[unique - 1])) {
+				bounds[unique++] = bounds[i];
+			}
+		}
+		starts = Arrays.copyOf(bounds, unique);
+		width = unique;
+		delta = new int[n][][];
+		int[][] row = new int[width][];
+		int[] lens = new int[width];
+		for (NFAState state : states) {
+			Arrays.fill(row, null);
+			Arrays.fill(lens, 0);
+			//the character transitions first, then the ranges in the order added
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = c == 'e' ? null : state.getTo(c);
+				if (to != null) {
+					int col = interval(c);
+					for (NFAState t : to) {
+						append(row, lens, col, t.getId());
+					}
+				}
+			}
+			for (int i = 0; i < state.getRangeCount(); i++) {
+				int to = state.getRangeTo(i).getId();
+				int hi = interval(state.getRangeHigh(i));
+				for (int col = interval(state.getRangeLow(i)); col <= hi; col++) {
+					append(row, lens, col, to);
+				}
+			}
+			int[][] copy = new int[width][];
+			for (int col = 0; col < width; col++) {
+				if (row[col] != null) {
+					copy[col] = Arrays.copyOf(row[col], lens[col]);
+				}
+			}
+			delta[state.getId()] = copy;
+		}
+		finals = finals(nfa, n);
+		closures = nfa.closureIndex();
+		NFAState q0 = (NFAState) nfa.getStartState();
+		start = q0 == null ? -1 : q0.getId();
+	}
+
+	/**
+	 * @return int - the number of states
+	 */
+	int size() {
+		return delta.length;
+	}
+
+	/**
+	 * @return int - the start state id, -1 if the NFA has none
+	 */
+	int start() {
+		return start;
+	}
+
+	/**
+	 * @return int - the number of columns
+	 */
+	int width() {
+		return width;
+	}
+
+	/**
+	 * @return int[] - the first code point of each interval, must not be modified,
+	 * or null if the columns are symbols
+	 */
+	int[] starts() {
+		return starts;
+	}
+
+	/**
+	 * Finds the interval a code point is in
+	 * @param int cp - the code point
+	 * @return int - the column of its interval
+	 */
+	int interval(int cp) {
+		int i = Arrays.binarySearch(starts, cp);
+		return i >= 0 ? i : -i - 2;
+	}
+
+	/**
+	 * @return char[] - the alphabet without e, must not be modified,
+	 * or null if the columns are intervals
+	 */
+	char[] symbols() {
+		return symbols;
+	}
+
+	/**
+	 * Gets the column of a symbol
+	 * @param char c - the symbol
+	 * @return int - its index in symbols, -1 if it isn't in the alphabet
+	 */
+	int column(char c) {
+		return c < columnOf.length ? columnOf[c] : -1;
+	}
+
+	/**
+	 * Gets the states reached from a state on a symbol
+	 * @param int state - the state id
+	 * @param int column - the symbol's column
+	 * @return int[] - the target ids, null if there are none
+	 */
+	int[] targets(int state, int column) {
+		return delta[state][column];
+	}
+
+	/**
+	 * Getter for the e closures of the states
+	 * @return ClosureIndex - the NFA's shared closure index
+	 */
+	ClosureIndex closures() {
+		return closures;
+	}
+
+	/**
+	 * @param int state - the state id
+	 * @return boolean - true if the state is final
+	 */
+	boolean isFinal(int state) {
+		return (finals[state >>> 6] & (1L << state)) != 0;
+	}
+
+	/**
+	 * @return long[] - the final states as a bitset, must not be modified
+	 */
+	long[] finals() {
+		return finals;
+	}
+
+	/**
+	 * @param int state - the state id
+	 * @return NFAState - the state with that id
+	 */
+	NFAState state(int state) {
+		return states.get(state);
+	}
+
+	private static long[] finals(NFA nfa, int n) {
+		long[] ret = new long[(n + 63) >>> 6];
+		for (State f : nfa.getFinalStates()) {
+			int id = ((NFAState) f).getId();
+			ret[id >>> 6] |= 1L << id;
+		}
+		return ret;
+	}
+
+	private static int[] grow(int[] a, int size) {
+		return size <= a.length ? a : Arrays.copyOf(a, Math.max(size, a.length * 2));
+	}
+
+	private static void append(int[][] row, int[] lens, int col, int id) {
+		if (row[col] == null) {
+			row[col] = new int[2];
+		} else if (lens[col] == row[col].length) {
+			row[col] = Arrays.copyOf(row[col], lens[col] * 2);
+		}
+		row[col][lens[col]++] = id;
+	}
+
+	private static int[] toIds(Set<NFAState> set) {
+		if (set == null) {
+			return null;
+		}
+		int[] ret = new int[set.size()];
+		int i = 0;
+		for (NFAState s : set) {
+			ret[i++] = s.getId();
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,526 @@
+package fa.nfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * Shrinks an NFA without changing its language, before it is
+ * determinized. States that can't be reached from the start state or
+ * can't reach a final state are dropped, and then states that are
+ * bisimilar, meaning they agree on being final and move on the same
+ * labels to states that are bisimilar in turn, are merged. The e
+ * symbol is treated as one more label, so the merge is safe with
+ * free transitions. Bisimilar states are found by partition refinement:
+ * starting from final and non final states, blocks are split by the
+ * labels and target blocks of their states until nothing changes, with
+ * a worklist of the blocks whose predecessors still need checking.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class Reduction {
+
+	//range labels are kept apart from the character labels by this bit
+	private static final long RANGE = 1L << 62;
+
+	private Reduction() {
+	}
+
+	/**
+	 * Builds the reduced NFA. The given NFA is not changed.
+	 * @param NFA nfa - the machine
+	 * @return NFA - a new machine accepting the same strings, with
+	 * each state named after the first state it stands for
+	 */
+	static NFA of(NFA nfa) {
+		List<NFAState> states = nfa.stateList();
+		int n = states.size();
+		NFA ret = new NFA();
+		NFAState q0 = (NFAState) nfa.getStartState();
+		if (q0 == null) {
+			return ret;
+		}
+		//labels[s] and targets[s] are the transitions of s, label i going to targets[s][i]
+		long[][] labels = new long[n][];
+		int[][] targets = new int[n][];
+		for (NFAState s : states) {
+			List<long[]> out = new ArrayList<long[]>();
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = s.getTo(c);
+				if (to != null) {
+					for (NFAState t : to) {
+						out.add(new long[] {c, t.getId()});
+					}
+				}
+			}
+			for (int i = 0; i < s.getRangeCount(); i++) {
+				long label = RANGE | ((long) s.getRangeLow(i) << 21) | s.getRangeHigh(i);
+				out.add(new long[] {label, s.getRangeTo(i).getId()});
+			}
+			labels[s.getId()] = new long[out.size()];
+			targets[s.getId()] = new int[out.size()];
+			for (int i = 0; i < out.size(); i++) {
+				labels[s.getId()][i] = out.get(i)[0];
+				targets[s.getId()][i] = (int) out.get(i)[1];
+			}
+		}
+		boolean[] isFinal = new boolean[n];
+		for (State f : nfa.getFinalStates()) {
+			isFinal[((NFAState) f).getId()] = true;
+		}
+		//keeps the states on some path from the start state to a final state
+		boolean[] keep = reachable(targets,new int[] {q0.getId()});
+		int[] finals = new int[n];
+		int count = 0;
+		for (int s = 0; s < n; s++) {
+			if (isFinal[s]) {
+				finals[count++] = s;
+			}
+		}
+		boolean[] useful = reachable(backward(targets), Arrays.copyOf(finals, count));
+		for (int s = 0; s < n; s++) {
+			keep[s] &= useful[s];
+		}
+		keep[q0.getId()] = true;
+		int[] block = refine(labels, targets, isFinal, keep);
+		//each block is named after its first state and added in that order
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		int[] rep = new int[n];
+		Arrays.fill(rep, -1);
+		for (int s = 0; s < n; s++) {
+			if (keep[s] && rep[block[s]] < 0) {
+				rep[block[s]] = s;
+				String name = states.get(s).getName();
+				names.put(block[s], name);
+				if (isFinal[s]) {
+					ret.addFinalState(name);
+				} else {
+					ret.addState(name);
+				}
+			}
+		}
+		ret.addStartState(names.get(block[q0.getId()]));
+		//bisimilar states have the same moves, so the first state's are enough
+		for (int s = 0; s < n; s++) {
+			if (!keep[s] || rep[block[s]] != s) {
+				continue;
+			}
+			String from = names.get(block[s]);
+			for (int i = 0; i < labels[s].length; i++) {
+				int t = targets[s][i];
+				if (!keep[t]) {
+					continue;
+				}
+				long label = labels[s][i];
+				String to = names.get(block[t]);
+				if ((label & RANGE) == 0) {
+					ret.addTransition(from, (char) label, to);
+				} else {
+					ret.addRangeTransition(from, (int) ((label >>> 21) & 0x1FFFFF),
+							(int) (label & 0x1FFFFF), to);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Splits the kept states into blocks of bisimilar states
+	 * @param long[][] labels - the labels of each state's transitions
+	 * @param int[][] targets - the targets of each state's transitions
+	 * @param boolean[] isFinal - which states are final
+	 * @param boolean[] keep - which states take part, the others are ignored
+	 * @return int[] - the block of each kept state
+	 */
+	private static int[] refine(long[][] labels, int[][] targets, boolean[] isFinal, boolean[] keep) {
+		return new Refinement(labels, targets, isFinal, keep).run();
+	}
+
+	/**
+	 * Paige and Tarjan's partition refinement, in the form Valmari gives it.
+	 * Next to the blocks of states there are blocks of transitions, at first
+	 * one per label. Every state of a block has a transition in a given
+	 * transition block or none of them has. When a block of states is split,
+	 * the transitions into the smaller half, or into both halves if the block
+	 * was still waiting, are split off from their transition blocks. A state
+	 * keeps a count of its transitions in each transition block, so after
+	 * a transition block is split the states with transitions in the new
+	 * part can tell whether they still have any in the old part, and their
+	 * blocks are split three ways without looking at the old part. Every
+	 * transition moves O(log n) times, so it runs in O(m log n).
+	 * Both partitions are kept as ranges of a permutation, as in Minimization.
+	 */
+	private static final class Refinement {
+		//the transitions between kept states
+		private final int[] src;
+		//into[intoStart[t] .. intoStart[t + 1]) = the transitions into state t
+		private final int[] intoStart;
+		private final int[] into;
+
+		//the blocks of states
+		private final int[] elems;
+		private final int[] loc;
+		private final int[] block;
+		private final int[] first;
+		private final int[] end;
+		private final int[] marked;
+		private int blocks;
+		//blocks waiting to have the transitions into them split off
+		private final int[] work;
+		private final boolean[] inWork;
+		private int top;
+
+		//the blocks of transitions
+		private final int[] telems;
+		private final int[] tloc;
+		private final int[] tblock;
+		private final int[] tfirst;
+		private final int[] tend;
+		private final int[] tmarked;
+		private int tblocks;
+
+		//counts[cnt[tr]] = how many transitions the source of tr has in tr's block
+		private final int[] cnt;
+		private int[] counts;
+		private int counters;
+		//per state scratch, valid while mark[s] == stamp
+		private final int[] mark;
+		private final int[] oldCounter;
+		private final int[] newCounter;
+		private int stamp;
+		private final int[] touched;
+
+		private Refinement(long[][] labels, int[][] targets, boolean[] isFinal, boolean[] keep) {
+			int n = labels.length;
+			int m = 0;
+			for (int s = 0; s < n; s++) {
+				if (keep[s]) {
+					for (int t : targets[s]) {
+						if (keep[t]) {
+							m++;
+						}
+					}
+				}
+			}
+			src = new int[m];
+			int[] dst = new int[m];
+			long[] lab = new long[m];
+			m = 0;
+			for (int s = 0; s < n; s++) {
+				if (!keep[s]) {
+					continue;
+				}
+				for (int i = 0; i < targets[s].length; i++) {
+					if (keep[targets[s][i]]) {
+						src[m] = s;
+						dst[m] = targets[s][i];
+						lab[m++] = labels[s][i];
+					}
+				}
+			}
+			intoStart = new int[n + 1];
+			for (int tr = 0; tr < m; tr++) {
+				intoStart[dst[tr] + 1]++;
+			}
+			for (int t = 0; t < n; t++) {
+				intoStart[t + 1] += intoStart[t];
+			}
+			into = new int[m];
+			int[] fill = Arrays.copyOf(intoStart, n);
+			for (int tr = 0; tr < m; tr++) {
+				into[fill[dst[tr]]++] = tr;
+			}
+
+			elems = new int[n];
+			loc = new int[n];
+			block = new int[n];
+			first = new int[n];
+			end = new int[n];
+			marked = new int[n];
+			work = new int[n];
+			inWork = new boolean[n];
+			//the final states go first, then the rest
+			int pos = 0;
+			for (int pass = 0; pass < 2; pass++) {
+				int start = pos;
+				for (int s = 0; s < n; s++) {
+					if (keep[s] && isFinal[s] == (pass == 0)) {
+						elems[pos] = s;
+						loc[s] = pos++;
+						block[s] = blocks;
+					}
+				}
+				if (pos > start) {
+					first[blocks] = start;
+					end[blocks++] = pos;
+				}
+			}
+			//splitting all the states in two, either half is enough to start with
+			if (blocks == 2) {
+				push(size(1) < size(0) ? 1 : 0);
+			}
+
+			//one transition block per label
+			long[] distinct = lab.clone();
+			Arrays.sort(distinct);
+			int k = 0;
+			for (int i = 0; i < m; i++) {
+				if (k == 0 || distinct[k - 1] != distinct[i]) {
+					distinct[k++] = distinct[i];
+				}
+			}
+			telems = new int[m];
+			tloc = new int[m];
+			tblock = new int[m];
+			tfirst = new int[m + 1];
+			tend = new int[m + 1];
+			tmarked = new int[m + 1];
+			for (int tr = 0; tr < m; tr++) {
+				tblock[tr] = Arrays.binarySearch(distinct, 0, k, lab[tr]);
+				tend[tblock[tr]]++;
+			}
+			for (int c = 0; c < k; c++) {
+				tfirst[c] = c == 0 ? 0 : tend[c - 1];
+				tend[c] += tfirst[c];
+			}
+			int[] tfill = Arrays.copyOf(tfirst, k);
+			for (int tr = 0; tr < m; tr++) {
+				tloc[tr] = tfill[tblock[tr]]++;
+				telems[tloc[tr]] = tr;
+			}
+			tblocks = k;
+
+			cnt = new int[m];
+			counts = new int[Math.max(m, 16)];
+			mark = new int[n];
+			oldCounter = new int[n];
+			newCounter = new int[n];
+			touched = new int[Math.max(n, m)];
+			for (int c = 0; c < k; c++) {
+				stamp++;
+				for (int j = tfirst[c]; j < tend[c]; j++) {
+					int s = src[telems[j]];
+					if (mark[s] != stamp) {
+						mark[s] = stamp;
+						newCounter[s] = counter();
+					}
+					cnt[telems[j]] = newCounter[s];
+					counts[newCounter[s]]++;
+				}
+			}
+		}
+
+		/**
+		 * Refines until every block is stable
+		 * @return int[] - the block of each kept state
+		 */
+		private int[] run() {
+			//a state moves on a label or not
+			for (int c = 0, k = tblocks; c < k; c++) {
+				splitBySources(c, false);
+			}
+			while (top > 0) {
+				int b = work[--top];
+				inWork[b] = false;
+				//moves the transitions into b to the front of their blocks
+				int touchedCount = 0;
+				for (int i = first[b]; i < end[b]; i++) {
+					int t = elems[i];
+					for (int p = intoStart[t]; p < intoStart[t + 1]; p++) {
+						int tr = into[p];
+						int c = tblock[tr];
+						if (tmarked[c] == 0) {
+							touched[touchedCount++] = c;
+						}
+						int front = tfirst[c] + tmarked[c];
+						int other = telems[front];
+						telems[front] = tr;
+						telems[tloc[tr]] = other;
+						tloc[other] = tloc[tr];
+						tloc[tr] = front;
+						tmarked[c]++;
+					}
+				}
+				//copies the touched blocks since splitting the states reuses the array
+				int[] split = Arrays.copyOf(touched, touchedCount);
+				for (int c : split) {
+					int count = tmarked[c];
+					tmarked[c] = 0;
+					if (count == tend[c] - tfirst[c]) {
+						continue;
+					}
+					//the marked transitions become a new block with their own counts
+					int nc = tblocks++;
+					tfirst[nc] = tfirst[c];
+					tend[nc] = tfirst[c] + count;
+					tfirst[c] = tend[nc];
+					stamp++;
+					for (int j = tfirst[nc]; j < tend[nc]; j++) {
+						int tr = telems[j];
+						int s = src[tr];
+						tblock[tr] = nc;
+						if (mark[s] != stamp) {
+							mark[s] = stamp;
+							oldCounter[s] = cnt[tr];
+							newCounter[s] = counter();
+						}
+						counts[cnt[tr]]--;
+						cnt[tr] = newCounter[s];
+						counts[cnt[tr]]++;
+					}
+					splitBySources(nc, true);
+				}
+			}
+			return block;
+		}
+
+		/**
+		 * Splits the blocks of states by having a transition in a transition block.
+		 * When counted, the states that have one are split again by whether
+		 * they still have a transition in the block it was split off from.
+		 * @param int c - the transition block
+		 * @param boolean counted - true if c was just split off another block
+		 */
+		private void splitBySources(int c, boolean counted) {
+			stamp++;
+			int touchedCount = 0;
+			for (int j = tfirst[c]; j < tend[c]; j++) {
+				int s = src[telems[j]];
+				if (mark[s] == stamp) {
+					continue;
+				}
+				mark[s] = stamp;
+				int b = block[s];
+				if (marked[b] == 0) {
+					touched[touchedCount++] = b;
+				}
+				moveToFront(s, first[b] + marked[b]++);
+			}
+			for (int i = 0; i < touchedCount; i++) {
+				int b = touched[i];
+				int count = marked[b];
+				marked[b] = 0;
+				int part = count == size(b) ? b : split(b, count);
+				if (!counted) {
+					continue;
+				}
+				int front = first[part];
+				for (int j = first[part]; j < end[part]; j++) {
+					int s = elems[j];
+					if (counts[oldCounter[s]] > 0) {
+						moveToFront(s, front++);
+					}
+				}
+				if (front > first[part] && front < end[part]) {
+					split(part, front - first[part]);
+				}
+			}
+		}
+
+		/**
+		 * Makes the first states of a block a new block
+		 * @param int b - the block
+		 * @param int count - how many states to split off
+		 * @return int - the new block
+		 */
+		private int split(int b, int count) {
+			int nb = blocks++;
+			first[nb] = first[b];
+			end[nb] = first[b] + count;
+			first[b] = end[nb];
+			for (int j = first[nb]; j < end[nb]; j++) {
+				block[elems[j]] = nb;
+			}
+			if (inWork[b]) {
+				push(nb);
+			} else {
+				push(size(nb) <= size(b) ? nb : b);
+			}
+			return nb;
+		}
+
+		private void moveToFront(int s, int front) {
+			int other = elems[front];
+			elems[front] = s;
+			elems[loc[s]] = other;
+			loc[other] = loc[s];
+			loc[s] = front;
+		}
+
+		private void push(int b) {
+			work[top++] = b;
+			inWork[b] = true;
+		}
+
+		private int size(int b) {
+			return end[b] - first[b];
+		}
+
+		private int counter() {
+			if (counters == counts.length) {
+				counts = Arrays.copyOf(counts, counters * 2);
+			}
+			counts[counters] = 0;
+			return counters++;
+		}
+	}
+
+	/**
+	 * Turns the transitions around
+	 * @param int[][] targets - targets[s] = states s moves to
+	 * @return int[][] - ret[t] = states that move to t
+	 */
+	private static int[][] backward(int[][] targets) {
+		int n = targets.length;
+		int[] degree = new int[n];
+		for (int[] to : targets) {
+			for (int t : to) {
+				degree[t]++;
+			}
+		}
+		int[][] ret = new int[n][];
+		for (int t = 0; t < n; t++) {
+			ret[t] = new int[degree[t]];
+		}
+		Arrays.fill(degree, 0);
+		for (int s = 0; s < n; s++) {
+			for (int t : targets[s]) {
+				ret[t][degree[t]++] = s;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Breadth first search
+	 * @param int[][] edges - edges[s] = states s leads to
+	 * @param int[] from - the states to start at
+	 * @return boolean[] - which states were reached
+	 */
+	private static boolean[] reachable(int[][] edges, int[] from) {
+		boolean[] ret = new boolean[edges.length];
+		Deque<Integer> queue = new ArrayDeque<Integer>();
+		for (int s : from) {
+			if (!ret[s]) {
+				ret[s] = true;
+				queue.add(s);
+			}
+		}
+		while (!queue.isEmpty()) {
+			int s = queue.poll();
+			for (int t : edges[s]) {
+				if (!ret[t]) {
+					ret[t] = true;
+					queue.add(t);
+				}
+			}
+		}
+		return ret;
+	}
+}
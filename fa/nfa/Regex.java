@@ -0,0 +1,204 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Builds NFAs from regular expressions with the Glushkov (position)
+ * construction. Every symbol occurrence in the expression is one
+ * position and becomes one state, plus a start state, so an expression
+ * with n symbols gives an NFA with n + 1 states and no e transitions.
+ * The transitions come from the first, last and follow sets of the
+ * positions, which are worked out while the expression is parsed.
+ * <p>
+ * The syntax is literal characters, concatenation, | for alternation,
+ * the postfix operators *, + and ?, and parentheses for grouping.
+ * A backslash makes the next character literal, and empty alternatives
+ * like (a|) match the empty string. The character e is rejected since
+ * NFA transitions on e are free transitions.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class Regex {
+
+	/**
+	 * What the parser knows about a subexpression
+	 */
+	private static final class Fragment {
+		private boolean nullable;
+		//positions that can match the first symbol
+		private final BitSet first;
+		//positions that can match the last symbol
+		private final BitSet last;
+
+		private Fragment(boolean nullable) {
+			this.nullable = nullable;
+			first = new BitSet();
+			last = new BitSet();
+		}
+	}
+
+	private final String pattern;
+	private int pos;
+	//symbols[i] = symbol of position i + 1
+	private final StringBuilder symbols;
+	//follow.get(i) = positions that can come right after position i + 1
+	private final List<BitSet> follow;
+
+	private Regex(String pattern) {
+		this.pattern = pattern;
+		symbols = new StringBuilder();
+		follow = new ArrayList<BitSet>();
+	}
+
+	/**
+	 * Parses a regular expression into an e free NFA. The start state is
+	 * named q0 and the state of position i is named qi.
+	 * @param String pattern - the expression
+	 * @return NFA - an NFA accepting the language of the expression
+	 * @throws IllegalArgumentException if the expression is malformed or contains e
+	 */
+	public static NFA toNFA(String pattern) {
+		Regex parser = new Regex(pattern);
+		Fragment f = parser.alternation();
+		if (parser.pos < pattern.length()) {
+			throw parser.error("Unmatched )");
+		}
+		return parser.build(f);
+	}
+
+	/**
+	 * Makes the NFA out of the positions
+	 */
+	private NFA build(Fragment f) {
+		int n = symbols.length();
+		NFA nfa = new NFA();
+		if (f.nullable) {
+			nfa.addFinalState("q0");
+		}
+		nfa.addStartState("q0");
+		for (int i = 1; i <= n; i++) {
+			if (f.last.get(i)) {
+				nfa.addFinalState("q" + i);
+			} else {
+				nfa.addState("q" + i);
+			}
+		}
+		List<String> from = new ArrayList<String>();
+		StringBuilder on = new StringBuilder();
+		List<String> to = new ArrayList<String>();
+		for (int i = 0; i <= n; i++) {
+			BitSet next = i == 0 ? f.first : follow.get(i - 1);
+			for (int j = next.nextSetBit(0); j >= 0; j = next.nextSetBit(j + 1)) {
+				from.add("q" + i);
+				on.append(symbols.charAt(j - 1));
+				to.add("q" + j);
+			}
+		}
+		nfa.addTransitions(from.toArray(new String[0]), on.toString().toCharArray(),
+				to.toArray(new String[0]));
+		return nfa;
+	}
+
+	/**
+	 * alternation := concatenation ('|' concatenation)*
+	 */
+	private Fragment alternation() {
+		Fragment ret = concatenation();
+		while (pos < pattern.length() && pattern.charAt(pos) == '|') {
+			pos++;
+			Fragment f = concatenation();
+			ret.nullable |= f.nullable;
+			ret.first.or(f.first);
+			ret.last.or(f.last);
+		}
+		return ret;
+	}
+
+	/**
+	 * concatenation := repetition*
+	 */
+	private Fragment concatenation() {
+		Fragment ret = new Fragment(true);
+		while (pos < pattern.length() && pattern.charAt(pos) != '|' && pattern.charAt(pos) != ')') {
+			Fragment f = repetition();
+			//whatever can end ret can be followed by whatever starts f
+			for (int i = ret.last.nextSetBit(0); i >= 0; i = ret.last.nextSetBit(i + 1)) {
+				follow.get(i - 1).or(f.first);
+			}
+			if (ret.nullable) {
+				ret.first.or(f.first);
+			}
+			if (f.nullable) {
+				ret.last.or(f.last);
+			} else {
+				ret.last.clear();
+				ret.last.or(f.last);
+			}
+			ret.nullable &= f.nullable;
+		}
+		return ret;
+	}
+
+	/**
+	 * repetition := atom ('*' | '+' | '?')*
+	 */
+	private Fragment repetition() {
+		Fragment ret = atom();
+		while (pos < pattern.length()) {
+			char c = pattern.charAt(pos);
+			if (c == '*' || c == '+') {
+				//the end of one repeat can be followed by the start of the next
+				for (int i = ret.last.nextSetBit(0); i >= 0; i = ret.last.nextSetBit(i + 1)) {
+					follow.get(i - 1).or(ret.first);
+				}
+				ret.nullable |= c == '*';
+			} else if (c == '?') {
+				ret.nullable = true;
+			} else {
+				break;
+			}
+			pos++;
+		}
+		return ret;
+	}
+
+	/**
+	 * atom := '(' alternation ')' | '\' char | char
+	 */
+	private Fragment atom() {
+		char c = pattern.charAt(pos);
+		if (c == '(') {
+			pos++;
+			Fragment ret = alternation();
+			if (pos >= pattern.length() || pattern.charAt(pos) != ')') {
+				throw error("Missing )");
+			}
+			pos++;
+			return ret;
+		}
+		if (c == '*' || c == '+' || c == '?') {
+			throw error("Nothing to repeat");
+		}
+		if (c == '\\') {
+			if (++pos >= pattern.length()) {
+				throw error("Trailing \\");
+			}
+			c = pattern.charAt(pos);
+		}
+		if (c == 'e') {
+			throw error("e is reserved for free transitions");
+		}
+		pos++;
+		symbols.append(c);
+		follow.add(new BitSet());
+		Fragment ret = new Fragment(false);
+		ret.first.set(symbols.length());
+		ret.last.set(symbols.length());
+		return ret;
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at index " + pos + " in " + pattern);
+	}
+}
@@ -0,0 +1,52 @@
+package fa.nfa;
+
+import java.util.Arrays;
+
+/**
+ * A set of NFA states stored as a sorted array of
+ * their dense ids, with the hash computed once up front
+ * so it can be used as a cheap key while determinizing.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class StateSet {
+
+	//sorted ids of the member states
+	private final int[] ids;
+	//hash of ids, computed once
+	private final int hash;
+
+	/**
+	 * Creates the key for the given members
+	 * @param int[] members - state ids in any order, without duplicates
+	 */
+	StateSet(int[] members) {
+		ids = members.clone();
+		Arrays.sort(ids);
+		hash = Arrays.hashCode(ids);
+	}
+
+	/**
+	 * Getter for the sorted member ids
+	 * @return int[] - the ids, must not be modified
+	 */
+	int[] ids() {
+		return ids;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof StateSet)) {
+			return false;
+		}
+		StateSet other = (StateSet) o;
+		return hash == other.hash && Arrays.equals(ids, other.ids);
+	}
+}
@@ -0,0 +1,516 @@
+package fa.nfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import fa.dfa.DFA;
+import fa.dfa.IntervalDFA;
+
+/**
+ * Subset construction over the dense state ids of an NFA.
+ * Each subset is kept as an array of ids and is looked up through a
+ * single hash map keyed by its sorted ids, so finding out if a subset
+ * was already seen no longer scans every subset made so far. While
+ * searching, a step adds the closure of each new state as a whole from
+ * the closure index. The DFA state names list the states in the order
+ * the old set based search found them in, so before the names are built
+ * the step each subset was first found on is replayed in that order.
+ * The columns are either the symbols of the alphabet, giving a DFA,
+ * or the code point intervals of the NFA's range transitions, giving
+ * an IntervalDFA. In the latter the empty
+ * subset is left out and its transitions are -1 instead.
+ * When given a ConversionStats it also counts
+ * and times what it does; without one it doesn't read the clock.
+ * @author Ben Harper and Andrew Haddon
+ */
+final class SubsetConstruction {
+
+	//the NFA's transitions over state ids
+	private final NFATable nfa;
+	//the alphabet without the e symbol, in the NFA's order, null for intervals
+	private final char[] symbols;
+	//the number of columns
+	private final int width;
+	//true if the columns are code point intervals
+	private final boolean intervals;
+
+	//discovered subsets, the index is the DFA state id
+	private final List<int[]> subsets;
+	private final HashMap<StateSet, Integer> ids;
+	//row major transition table, table[subset * width + column]
+	private int[] table;
+	//origin[subset] = index in table of the transition the subset was first found on
+	private int[] origin;
+	//true once the subsets are in the order of the old search
+	private boolean ordered;
+
+	//found marker of a step to the empty subset, which has no id in an interval DFA
+	private static final int EMPTY = -2;
+
+	//scratch space for building the next subset on this thread
+	private final Scratch scratch;
+	//scratch space of each pool thread, made the first time it runs a task
+	//of this conversion and dropped when run(pool) returns
+	private final ConcurrentHashMap<Thread, Scratch> workerScratch;
+	//where to count and time this conversion, null if nothing is measured
+	private final ConversionStats stats;
+
+	/**
+	 * Scratch space for building subsets, one per thread
+	 */
+	private static final class Scratch {
+		//marks[s] == stamp if s is already in the subset being built
+		private final int[] marks;
+		private int stamp;
+		private final int[] buffer;
+		//counters kept per thread while measuring, added to the stats at the end
+		private long closureHits;
+		private long stepNanos;
+		private long hashNanos;
+
+		private Scratch(int n) {
+			marks = new int[n];
+			buffer = new int[n];
+		}
+	}
+
+	/**
+	 * Computes the next subsets for a range of (subset, symbol) pairs of one
+	 * BFS level and looks up which of them were already found
+	 */
+	private final class LevelTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		//pairs handled by one task without splitting further
+		private static final int CHUNK = 64;
+		private final int levelStart;
+		private final int[][] next;
+		private final StateSet[] keys;
+		private final int[] found;
+		private final int lo;
+		private final int hi;
+
+		private LevelTask(int levelStart, int[][] next, StateSet[] keys, int[] found, int lo, int hi) {
+			this.levelStart = levelStart;
+			this.next = next;
+			this.keys = keys;
+			this.found = found;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		@Override
+		protected void compute() {
+			if (hi - lo > CHUNK) {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new LevelTask(levelStart, next, keys, found, lo, mid),
+						new LevelTask(levelStart, next, keys, found, mid, hi));
+				return;
+			}
+			Scratch local = workerScratch.computeIfAbsent(Thread.currentThread(), t -> new Scratch(nfa.size()));
+			int k = width;
+			for (int x = lo; x < hi; x++) {
+				long t0 = stats == null ? 0 : System.nanoTime();
+				next[x] = step(subsets.get(levelStart + x / k), x % k, local);
+				long t1 = stats == null ? 0 : System.nanoTime();
+				keys[x] = new StateSet(next[x]);
+				Integer id = ids.get(keys[x]);
+				found[x] = id == null ? (intervals && next[x].length == 0 ? EMPTY : -1) : id;
+				if (stats != null) {
+					local.stepNanos += t1 - t0;
+					local.hashNanos += System.nanoTime() - t1;
+				}
+			}
+			if (stats != null) {
+				record(local);
+			}
+		}
+	}
+
+	/**
+	 * Reads the states and transitions out of the given NFA
+	 * @param NFA nfa - the machine to determinize
+	 * @param boolean intervals - true for code point interval columns, false for symbols
+	 * @param ConversionStats stats - where to count and time the conversion, or null
+	 */
+	SubsetConstruction(NFA nfa, boolean intervals, ConversionStats stats) {
+		this.stats = stats;
+		this.intervals = intervals;
+		long t0 = stats == null ? 0 : System.nanoTime();
+		if (stats != null && !nfa.hasClosureIndex()) {
+			//every closure is computed when the index is built
+			stats.addClosures(0, nfa.closureIndex().componentCount());
+			long t1 = System.nanoTime();
+			stats.addNanos(ConversionStats.Phase.CLOSURES, t1 - t0);
+			t0 = t1;
+		}
+		this.nfa = intervals ? new NFATable(nfa, true) : new NFATable(nfa);
+		if (stats != null) {
+			stats.addNanos(ConversionStats.Phase.TABLE, System.nanoTime() - t0);
+		}
+		symbols = this.nfa.symbols();
+		width = this.nfa.width();
+		int n = this.nfa.size();
+		subsets = new ArrayList<int[]>();
+		ids = new HashMap<StateSet, Integer>();
+		table = new int[16];
+		origin = new int[16];
+		scratch = new Scratch(n);
+		workerScratch = new ConcurrentHashMap<Thread, Scratch>();
+	}
+
+	/**
+	 * Runs the breadth first search over the reachable subsets
+	 * starting at the e closure of the start state
+	 */
+	void run() {
+		int[] first = nfa.closures().toArray(nfa.start());
+		scratch.closureHits++;
+		ids.put(new StateSet(first), 0);
+		subsets.add(first);
+		int k = width;
+		//the list doubles as the BFS queue, subsets are handled in the order found
+		for (int i = 0; i < subsets.size(); i++) {
+			int[] curr = subsets.get(i);
+			for (int j = 0; j < k; j++) {
+				long t0 = stats == null ? 0 : System.nanoTime();
+				int[] next = step(curr, j, scratch);
+				long t1 = stats == null ? 0 : System.nanoTime();
+				Integer id;
+				if (intervals && next.length == 0) {
+					id = -1;
+				} else {
+					StateSet key = new StateSet(next);
+					id = ids.get(key);
+					if (id == null) {
+						id = subsets.size();
+						ids.put(key, id);
+						subsets.add(next);
+						setOrigin(id, i * k + j);
+					}
+				}
+				setTransition(i * k + j, id);
+				if (stats != null) {
+					scratch.stepNanos += t1 - t0;
+					scratch.hashNanos += System.nanoTime() - t1;
+				}
+			}
+			if (stats != null) {
+				//the subsets found but not expanded yet
+				stats.frontier(subsets.size() - i - 1);
+			}
+		}
+		if (stats != null) {
+			record(scratch);
+		}
+	}
+
+	/**
+	 * Runs the same search one BFS level at a time, computing the next
+	 * subsets of a level in parallel. New subsets are then numbered
+	 * in the same order run() would number them, so the DFA is the same
+	 * for any number of threads.
+	 * @param ForkJoinPool pool - the pool to run the levels on
+	 */
+	void run(ForkJoinPool pool) {
+		//the closure index is immutable, so every task can read it
+		int[] first = nfa.closures().toArray(nfa.start());
+		if (stats != null) {
+			stats.addClosures(1, 0);
+		}
+		ids.put(new StateSet(first), 0);
+		subsets.add(first);
+		int k = width;
+		int levelStart = 0;
+		try {
+			while (levelStart < subsets.size() && k > 0) {
+				int levelEnd = subsets.size();
+				int count = (levelEnd - levelStart) * k;
+				int[][] next = new int[count][];
+				StateSet[] keys = new StateSet[count];
+				int[] found = new int[count];
+				pool.invoke(new LevelTask(levelStart, next, keys, found, 0, count));
+				long t0 = stats == null ? 0 : System.nanoTime();
+				//numbers the new subsets in BFS order
+				for (int x = 0; x < count; x++) {
+					int id = found[x];
+					if (id == EMPTY) {
+						id = -1;
+					} else if (id < 0) {
+						Integer known = ids.get(keys[x]);
+						if (known == null) {
+							id = subsets.size();
+							ids.put(keys[x], id);
+							subsets.add(next[x]);
+							setOrigin(id, levelStart * k + x);
+						} else {
+							id = known;
+						}
+					}
+					setTransition(levelStart * k + x, id);
+				}
+				if (stats != null) {
+					stats.addNanos(ConversionStats.Phase.HASHING, System.nanoTime() - t0);
+					stats.frontier(subsets.size() - levelEnd);
+				}
+				levelStart = levelEnd;
+			}
+		} finally {
+			workerScratch.clear();
+		}
+	}
+
+	/**
+	 * @return int - the number of subsets found, which is the number of DFA states
+	 */
+	int size() {
+		return subsets.size();
+	}
+
+	/**
+	 * @param int id - the DFA state id
+	 * @return int[] - the NFA state ids in that subset, in the order of the old
+	 * search once the DFA has been built, must not be modified
+	 */
+	int[] subset(int id) {
+		return subsets.get(id);
+	}
+
+	/**
+	 * @return char[] - the symbols of the columns, null for intervals, must not be modified
+	 */
+	char[] symbols() {
+		return symbols;
+	}
+
+	/**
+	 * Builds the DFA state name of a subset
+	 * @param int id - the DFA state id
+	 * @return String - the name, for example [a, b]
+	 */
+	String name(int id) {
+		order();
+		return name(subsets.get(id));
+	}
+
+	/**
+	 * Computes the subset reached from curr on a symbol, including e closures
+	 * @param int[] curr - the current subset
+	 * @param int symbol - the column of the symbol
+	 * @param Scratch scratch - scratch space of the calling thread
+	 * @return int[] - the next subset, in no particular order
+	 */
+	private int[] step(int[] curr, int symbol, Scratch scratch) {
+		ClosureIndex closures = nfa.closures();
+		int[] closed = closures.members();
+		int[] marks = scratch.marks;
+		int[] buffer = scratch.buffer;
+		int stamp = ++scratch.stamp;
+		int len = 0;
+		for (int s : curr) {
+			int[] targets = nfa.targets(s, symbol);
+			if (targets == null) {
+				continue;
+			}
+			for (int t : targets) {
+				//a state already in the subset brought its closure with it
+				if (marks[t] == stamp) {
+					continue;
+				}
+				scratch.closureHits++;
+				for (int j = closures.start(t), to = closures.end(t); j < to; j++) {
+					int c = closed[j];
+					if (marks[c] != stamp) {
+						marks[c] = stamp;
+						buffer[len++] = c;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(buffer, len);
+	}
+
+	/**
+	 * Puts the states of every subset in the order the old set based search
+	 * found them in. Each subset is built again from the transition it was
+	 * first found on, out of its parent, which comes before it and so is
+	 * already in order.
+	 */
+	private void order() {
+		if (ordered || subsets.isEmpty()) {
+			return;
+		}
+		ordered = true;
+		ClosureOrder order = new ClosureOrder(nfa.closures());
+		order.begin();
+		order.add(nfa.start());
+		order.close();
+		subsets.set(0, order.toArray());
+		for (int i = 1; i < subsets.size(); i++) {
+			int col = origin[i] % width;
+			order.begin();
+			for (int s : subsets.get(origin[i] / width)) {
+				int[] targets = nfa.targets(s, col);
+				if (targets != null) {
+					for (int t : targets) {
+						order.add(t);
+					}
+					order.close();
+				}
+			}
+			subsets.set(i, order.toArray());
+		}
+	}
+
+	/**
+	 * Adds the counters of one thread's scratch space to the stats and clears them
+	 * @param Scratch s - the scratch space
+	 */
+	private void record(Scratch s) {
+		stats.addClosures(s.closureHits, 0);
+		stats.addNanos(ConversionStats.Phase.STEPS, s.stepNanos);
+		stats.addNanos(ConversionStats.Phase.HASHING, s.hashNanos);
+		s.closureHits = 0;
+		s.stepNanos = 0;
+		s.hashNanos = 0;
+	}
+
+	private void setTransition(int index, int to) {
+		if (index >= table.length) {
+			table = Arrays.copyOf(table, Math.max(index + 1, table.length * 2));
+		}
+		table[index] = to;
+	}
+
+	private void setOrigin(int id, int index) {
+		if (id >= origin.length) {
+			origin = Arrays.copyOf(origin, Math.max(id + 1, origin.length * 2));
+		}
+		origin[id] = index;
+	}
+
+	/**
+	 * Builds the DFA out of the discovered subsets, adding the states
+	 * and transitions in the same order the set based search did
+	 * @return DFA - the determinized machine
+	 */
+	DFA toDFA() {
+		DFA dfa = new DFA();
+		long t0 = stats == null ? 0 : System.nanoTime();
+		order();
+		String[] names = new String[subsets.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = name(subsets.get(i));
+		}
+		long t1 = stats == null ? 0 : System.nanoTime();
+		for (int i = 0; i < names.length; i++) {
+			if (isFinal(subsets.get(i))) {
+				dfa.addFinalState(names[i]);
+			} else {
+				dfa.addState(names[i]);
+			}
+		}
+		//the start state may be final, so it is added like the others first
+		dfa.setStartState(names[0]);
+		int k = width;
+		for (int i = 0; i < names.length; i++) {
+			for (int j = 0; j < k; j++) {
+				dfa.addTransition(names[i], symbols[j], names[table[i * k + j]]);
+			}
+		}
+		if (stats != null) {
+			stats.addNanos(ConversionStats.Phase.NAMING, t1 - t0);
+			stats.addNanos(ConversionStats.Phase.INSERTION, System.nanoTime() - t1);
+			stats.addConversion(names.length, (long) names.length * k);
+		}
+		return dfa;
+	}
+
+	/**
+	 * Builds the interval DFA out of the discovered subsets. Neighbouring
+	 * intervals that every subset leaves to the same states are joined.
+	 * @return IntervalDFA - the determinized machine
+	 */
+	IntervalDFA toIntervalDFA() {
+		long t0 = stats == null ? 0 : System.nanoTime();
+		order();
+		int n = subsets.size();
+		String[] names = new String[n];
+		boolean[] finals = new boolean[n];
+		for (int i = 0; i < n; i++) {
+			names[i] = name(subsets.get(i));
+			finals[i] = isFinal(subsets.get(i));
+		}
+		long t1 = stats == null ? 0 : System.nanoTime();
+		int k = width;
+		int[] starts = nfa.starts();
+		//keep[j] is true if interval j can't be joined to the one before it
+		boolean[] keep = new boolean[k];
+		int kept = 0;
+		for (int j = 0; j < k; j++) {
+			keep[j] = j == 0;
+			for (int i = 0; i < n && !keep[j]; i++) {
+				keep[j] = table[i * k + j] != table[i * k + j - 1];
+			}
+			if (keep[j]) {
+				kept++;
+			}
+		}
+		int[] joined = new int[kept];
+		int[] rows = new int[n * kept];
+		long transitions = 0;
+		int col = -1;
+		for (int j = 0; j < k; j++) {
+			if (keep[j]) {
+				joined[++col] = starts[j];
+				for (int i = 0; i < n; i++) {
+					rows[i * kept + col] = table[i * k + j];
+					if (table[i * k + j] >= 0) {
+						transitions++;
+					}
+				}
+			}
+		}
+		IntervalDFA ret = new IntervalDFA(joined, rows, finals, 0, names);
+		if (stats != null) {
+			stats.addNanos(ConversionStats.Phase.NAMING, t1 - t0);
+			stats.addNanos(ConversionStats.Phase.INSERTION, System.nanoTime() - t1);
+			stats.addConversion(n, transitions);
+		}
+		return ret;
+	}
+
+	/**
+	 * Utility that checks if a subset contains a final state
+	 * @param int[] subset - the state ids
+	 * @return boolean - true if any of them is final
+	 */
+	private boolean isFinal(int[] subset) {
+		for (int s : subset) {
+			if (nfa.isFinal(s)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Builds the DFA state name the same way Set.toString does
+	 * @param int[] subset - the state ids
+	 * @return String - the name, for example [a, b]
+	 */
+	private String name(int[] subset) {
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < subset.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(nfa.state(subset[i]).getName());
+		}
+		return sb.append(']').toString();
+	}
+}
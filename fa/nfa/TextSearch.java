@@ -0,0 +1,378 @@
+package fa.nfa;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import fa.State;
+import fa.dfa.CompiledDFA;
+
+/**
+ * Finds the substrings of a long text that an NFA accepts, scanning
+ * the text once instead of testing every substring. The NFA is
+ * turned into two DFAs. The forward one has an implicit any symbol
+ * loop in front of the NFA, so it is in a final state right after
+ * every position where a match ends. The reverse one accepts the
+ * reversed matches, and running it backwards from an end finds the
+ * leftmost start of a match ending there. The reverse runs from all
+ * the ends are made together in one backward pass, so the time is
+ * linear in the text for a given NFA.
+ * Every end offset where a non empty match ends is reported once,
+ * with its leftmost start, so matches can overlap. Symbols outside
+ * the NFA's alphabet can't be part of a match; as in the rest of the
+ * char API, e is never a symbol.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class TextSearch {
+
+	/**
+	 * A match of the text from start, inclusive, to end, exclusive
+	 */
+	public static final class Match {
+		private final int start;
+		private final int end;
+
+		/**
+		 * @param int start - offset of the first symbol of the match
+		 * @param int end - offset just after the last symbol of the match
+		 */
+		public Match(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @return int - offset of the first symbol of the match
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * @return int - offset just after the last symbol of the match
+		 */
+		public int getEnd() {
+			return end;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Match && ((Match) o).start == start && ((Match) o).end == end;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * start + end;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + start + ", " + end + ")";
+		}
+	}
+
+	//the NFA behind an any symbol loop
+	private final CompiledDFA forward;
+	//the NFA with its transitions reversed
+	private final CompiledDFA reverse;
+
+	/**
+	 * Builds the forward and reverse DFAs of the NFA, which is not changed
+	 * @param NFA nfa - the pattern, it must have a start state and no range transitions
+	 */
+	public TextSearch(NFA nfa) {
+		if (nfa.getStartState() == null) {
+			throw new IllegalStateException("The NFA has no start state");
+		}
+		//the copies below only carry the single character transitions
+		nfa.requireNoRanges();
+		forward = forwardNFA(nfa).getDFA().compile();
+		reverse = reverseNFA(nfa).getDFA().compile();
+	}
+
+	/**
+	 * Finds every match in the text
+	 * @param CharSequence text - the text
+	 * @return List<Match> - a match for each end offset, in order of their ends
+	 */
+	public List<Match> findAll(CharSequence text) {
+		//the forward pass finds the ends
+		int[] ends = new int[16];
+		int count = 0;
+		int start = forward.getStartState();
+		int state = start;
+		for (int i = 0; i < text.length(); i++) {
+			state = forward.step(state, text.charAt(i));
+			if (state < 0) {
+				//no match can contain a symbol outside the alphabet
+				state = start;
+			} else if (forward.isFinal(state)) {
+				if (count == ends.length) {
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				ends[count++] = i + 1;
+			}
+		}
+		int[] starts = leftmostStarts(text, ends, count);
+		List<Match> ret = new ArrayList<Match>();
+		for (int k = 0; k < count; k++) {
+			if (starts[k] >= 0) {
+				ret.add(new Match(starts[k], ends[k]));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Finds every match in the bytes between the buffer's position and limit,
+	 * reading each byte as the character with that code (ISO-8859-1).
+	 * The buffer, which may be memory mapped, is not changed and the
+	 * offsets are relative to its position.
+	 * @param ByteBuffer text - the text
+	 * @return List<Match> - a match for each end offset, in order of their ends
+	 */
+	public List<Match> findAll(ByteBuffer text) {
+		return findAll(new Latin1(text));
+	}
+
+	/**
+	 * Runs the reverse DFA backwards from every end in a single pass over
+	 * the text. Runs started at different ends that reach the same state
+	 * at the same offset behave the same from then on, so they are joined
+	 * under a new node and stepped once. A node remembers the last offset,
+	 * the leftmost one, where it was in a final state. The leftmost start
+	 * of an end is then that of its highest node that has one, since the
+	 * nodes above it were only in final states further left. At most one
+	 * run per reverse DFA state is stepped at each offset, and offsets
+	 * where no run is alive are skipped.
+	 * @param CharSequence text - the text
+	 * @param int[] ends - the ends in increasing order
+	 * @param int count - the number of ends
+	 * @return int[] - the leftmost start of a non empty match for each end, or -1
+	 */
+	private int[] leftmostStarts(CharSequence text, int[] ends, int count) {
+		//nodes 0 to count - 1 are the runs started at each end, later ones are joins
+		int[] parent = new int[Math.max(16, 2 * count)];
+		int[] last = new int[parent.length];
+		Arrays.fill(parent, -1);
+		Arrays.fill(last, -1);
+		int nodes = count;
+		int states = reverse.getStateCount();
+		//the live runs, as their states and nodes, and the node of each state
+		int[] runState = new int[states];
+		int[] runNode = new int[states];
+		int runs = 0;
+		int[] nextState = new int[states];
+		int[] nextNode = new int[states];
+		int[] nodeOf = new int[states];
+		Arrays.fill(nodeOf, -1);
+		int k = count - 1;
+		int pos = count == 0 ? 0 : ends[k];
+		while (pos > 0 && (runs > 0 || k >= 0)) {
+			if (runs == 0 && ends[k] < pos) {
+				pos = ends[k];
+			}
+			if (k >= 0 && ends[k] == pos) {
+				//a new run starts at this end
+				int s = reverse.getStartState();
+				int found = -1;
+				for (int r = 0; r < runs; r++) {
+					if (runState[r] == s) {
+						found = r;
+					}
+				}
+				if (found < 0) {
+					runState[runs] = s;
+					runNode[runs++] = k;
+				} else {
+					if (nodes + 1 > parent.length) {
+						parent = grow(parent, nodes + 1);
+						last = grow(last, nodes + 1);
+					}
+					parent[runNode[found]] = nodes;
+					parent[k] = nodes;
+					runNode[found] = nodes++;
+				}
+				k--;
+			}
+			//steps every run over the symbol before pos
+			char c = text.charAt(pos - 1);
+			int next = 0;
+			for (int r = 0; r < runs; r++) {
+				int t = reverse.step(runState[r], c);
+				if (t < 0) {
+					continue;
+				}
+				if (nodeOf[t] < 0) {
+					nodeOf[t] = next;
+					nextState[next] = t;
+					nextNode[next++] = runNode[r];
+				} else {
+					if (nodes + 2 > parent.length) {
+						parent = grow(parent, nodes + 2);
+						last = grow(last, nodes + 2);
+					}
+					parent[nextNode[nodeOf[t]]] = nodes;
+					parent[runNode[r]] = nodes;
+					nextNode[nodeOf[t]] = nodes++;
+				}
+			}
+			pos--;
+			for (int r = 0; r < next; r++) {
+				nodeOf[nextState[r]] = -1;
+				if (reverse.isFinal(nextState[r])) {
+					last[nextNode[r]] = pos;
+				}
+			}
+			int[] swap = runState;
+			runState = nextState;
+			nextState = swap;
+			swap = runNode;
+			runNode = nextNode;
+			nextNode = swap;
+			runs = next;
+		}
+		//joins are numbered after the nodes they join, so parents come first
+		int[] start = new int[nodes];
+		for (int x = nodes - 1; x >= 0; x--) {
+			int p = parent[x];
+			start[x] = p >= 0 && start[p] >= 0 ? start[p] : last[x];
+		}
+		return Arrays.copyOf(start, count);
+	}
+
+	private static int[] grow(int[] a, int size) {
+		int[] ret = Arrays.copyOf(a, Math.max(size, a.length * 2));
+		Arrays.fill(ret, a.length, ret.length, -1);
+		return ret;
+	}
+
+	/**
+	 * Copies the NFA behind a new start state that loops on every symbol
+	 * and has an e transition to the old start state
+	 */
+	private static NFA forwardNFA(NFA nfa) {
+		NFA ret = new NFA();
+		String loop = unusedName(nfa, "any");
+		ret.addStartState(loop);
+		copyStates(nfa, ret);
+		for (char c : nfa.getABC()) {
+			if (c != 'e') {
+				ret.addTransition(loop, c, loop);
+			}
+		}
+		ret.addTransition(loop, 'e', nfa.getStartState().getName());
+		for (State s : nfa.getStates()) {
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = nfa.getToState((NFAState) s, c);
+				if (to != null) {
+					for (NFAState t : to) {
+						ret.addTransition(s.getName(), c, t.getName());
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Copies the NFA with every transition turned around, a new start
+	 * state with e transitions to the old final states, and the old start
+	 * state as the only final state
+	 */
+	private static NFA reverseNFA(NFA nfa) {
+		NFA ret = new NFA();
+		String start = unusedName(nfa, "end");
+		ret.addStartState(start);
+		for (State s : nfa.getStates()) {
+			if (s == nfa.getStartState()) {
+				ret.addFinalState(s.getName());
+			} else {
+				ret.addState(s.getName());
+			}
+		}
+		for (State f : nfa.getFinalStates()) {
+			ret.addTransition(start, 'e', f.getName());
+		}
+		for (State s : nfa.getStates()) {
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = nfa.getToState((NFAState) s, c);
+				if (to != null) {
+					for (NFAState t : to) {
+						ret.addTransition(t.getName(), c, s.getName());
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static void copyStates(NFA from, NFA to) {
+		for (State s : from.getStates()) {
+			if (from.getFinalStates().contains(s)) {
+				to.addFinalState(s.getName());
+			} else {
+				to.addState(s.getName());
+			}
+		}
+	}
+
+	/**
+	 * Finds a state name the NFA doesn't use yet
+	 * @param NFA nfa - the NFA
+	 * @param String base - the name to start from
+	 * @return String - base, or base followed by the first number that is free
+	 */
+	private static String unusedName(NFA nfa, String base) {
+		String ret = base;
+		for (int i = 1; nfa.hasState(ret); i++) {
+			ret = base + i;
+		}
+		return ret;
+	}
+
+	/**
+	 * A byte buffer read as ISO-8859-1 characters, without copying it
+	 */
+	private static final class Latin1 implements CharSequence {
+		private final ByteBuffer bytes;
+		private final int offset;
+		private final int length;
+
+		private Latin1(ByteBuffer bytes) {
+			this(bytes, bytes.position(), bytes.remaining());
+		}
+
+		private Latin1(ByteBuffer bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) (bytes.get(offset + index) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new Latin1(bytes, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			char[] chars = new char[length];
+			for (int i = 0; i < length; i++) {
+				chars[i] = charAt(i);
+			}
+			return new String(chars);
+		}
+	}
+}
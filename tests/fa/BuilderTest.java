@@ -0,0 +1,107 @@
+package fa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fa.dfa.DFA;
+import fa.nfa.NFA;
+
+/**
+ * Tests for looking states up by name and the bulk builders of NFA and DFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class BuilderTest {
+
+	/**
+	 * Adding in bulk builds the same machines as adding one at a time
+	 */
+	public static void testBulkMatchesSingleCalls() {
+		List<String> states = Arrays.asList("a", "b", "c");
+		List<Transition> transitions = Arrays.asList(new Transition("a", '0', "b"), new Transition("b", '1', "c"),
+				new Transition("c", '0', "a"), new Transition("a", '1', "a"));
+		NFA single = new NFA();
+		single.addStartState("a");
+		single.addFinalState("c");
+		single.addState("b");
+		for (Transition t : transitions) {
+			single.addTransition(t.getFromState(), t.getOnSymb(), t.getToState());
+		}
+		NFA fromList = new NFA();
+		fromList.addStartState("a");
+		fromList.addFinalStates(Arrays.asList("c"));
+		fromList.addStates(states);
+		fromList.addTransitions(transitions);
+		NFA fromArrays = new NFA();
+		fromArrays.addStartState("a");
+		fromArrays.addFinalStates(Arrays.asList("c"));
+		fromArrays.addStates(states);
+		fromArrays.addTransitions(new String[] {"a", "b", "c", "a"}, new char[] {'0', '1', '0', '1'},
+				new String[] {"b", "c", "a", "a"});
+		String expected = single.getDFA().toString();
+		equal(expected, fromList.getDFA().toString(), "NFA from a list");
+		equal(expected, fromArrays.getDFA().toString(), "NFA from arrays");
+		//the names that already exist are skipped
+		equal(3, fromList.getStates().size(), "NFA states");
+
+		DFA dfa = new DFA();
+		dfa.addStates(states);
+		dfa.addFinalStates(Arrays.asList("d"));
+		dfa.setStartState("a");
+		dfa.addTransitions(transitions);
+		dfa.addTransitions(new String[] {"b", "c"}, new char[] {'0', '1'}, new String[] {"d", "d"});
+		equal(4, dfa.getStates().size(), "DFA states");
+		check(dfa.accepts("00"), "00");
+		check(dfa.accepts("011"), "011");
+		check(!dfa.accepts("01"), "01");
+	}
+
+	/**
+	 * Parallel arrays of different lengths are refused
+	 */
+	public static void testArraysOfDifferentLengths() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		fails(IllegalArgumentException.class, () -> nfa.addTransitions(new String[] {"a"}, new char[0],
+				new String[] {"a"}));
+		DFA dfa = new DFA();
+		dfa.addStartState("a");
+		fails(IllegalArgumentException.class, () -> dfa.addTransitions(new String[] {"a"}, new char[] {'0'},
+				new String[0]));
+	}
+
+	/**
+	 * Building a machine with many states takes time linear in its size
+	 */
+	public static void testManyStatesAreLinear() {
+		int n = 200000;
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < n; i++) {
+			names.add("q" + i);
+		}
+		String[] from = new String[n - 1];
+		char[] on = new char[n - 1];
+		String[] to = new String[n - 1];
+		for (int i = 0; i + 1 < n; i++) {
+			from[i] = names.get(i);
+			on[i] = '0';
+			to[i] = names.get(i + 1);
+		}
+		long t0 = System.nanoTime();
+		NFA nfa = new NFA();
+		nfa.addStates(names);
+		nfa.addTransitions(from, on, to);
+		DFA dfa = new DFA();
+		dfa.addStates(names);
+		dfa.addTransitions(from, on, to);
+		long ms = (System.nanoTime() - t0) / 1000000;
+		equal(n, nfa.getStates().size(), "NFA states");
+		equal(n, dfa.getStates().size(), "DFA states");
+		//looking every name up in a list took minutes here
+		check(ms < 5000, "took " + ms + " ms");
+	}
+}
@@ -0,0 +1,164 @@
+package fa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Runs the unit tests and holds the checks they use. A test is a
+ * public static method with no parameters whose name starts with
+ * test, in one of the classes listed below; it fails by throwing.
+ * Compile from the top level folder with
+ * javac -d out $(find fa tests -name '*.java')
+ * and run with java -cp out fa.Tests [class name filter]
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class Tests {
+
+	private static final Class<?>[] CLASSES = {
+		fa.BuilderTest.class,
+		fa.nfa.SubsetConstructionTest.class,
+		fa.nfa.ClosureIndexTest.class,
+		fa.nfa.ParallelConversionTest.class,
+		fa.nfa.DFACacheTest.class,
+		fa.nfa.ConversionStatsTest.class,
+		fa.nfa.NFASimulatorTest.class,
+		fa.nfa.LazyDFATest.class,
+		fa.nfa.IncrementalDFATest.class,
+		fa.nfa.MultiPatternTest.class,
+		fa.nfa.TextSearchTest.class,
+		fa.nfa.RegexTest.class,
+		fa.nfa.EpsilonEliminationTest.class,
+		fa.nfa.ReductionTest.class,
+		fa.nfa.RangeTest.class,
+		fa.nfa.NFALoaderTest.class,
+		fa.dfa.CompiledDFATest.class,
+		fa.dfa.MinimizationTest.class,
+		fa.dfa.DFAMatcherTest.class,
+		fa.dfa.DFAWriterTest.class,
+		fa.dfa.ProductTest.class,
+		fa.dfa.DFAFileTest.class,
+		fa.bench.GeneratorsTest.class,
+	};
+
+	private Tests() {
+	}
+
+	/**
+	 * @param args - an optional substring the test class names must contain
+	 */
+	public static void main(String[] args) {
+		String filter = args.length > 0 ? args[0] : "";
+		int run = 0;
+		List<String> failures = new ArrayList<String>();
+		for (Class<?> c : CLASSES) {
+			if (!c.getName().contains(filter)) {
+				continue;
+			}
+			for (Method m : c.getDeclaredMethods()) {
+				if (!m.getName().startsWith("test") || m.getParameterCount() != 0
+						|| !Modifier.isStatic(m.getModifiers())) {
+					continue;
+				}
+				run++;
+				try {
+					m.invoke(null);
+				} catch (InvocationTargetException e) {
+					failures.add(c.getSimpleName() + "." + m.getName() + ": " + e.getCause());
+				} catch (IllegalAccessException e) {
+					failures.add(c.getSimpleName() + "." + m.getName() + ": " + e);
+				}
+			}
+		}
+		for (String f : failures) {
+			System.out.println("FAIL " + f);
+		}
+		System.out.println(run + " tests, " + failures.size() + " failures");
+		if (!failures.isEmpty()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param boolean condition - what must hold
+	 * @param String message - what went wrong if it doesn't
+	 */
+	public static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/**
+	 * @param Object expected - the expected value
+	 * @param Object actual - the actual value
+	 * @param String message - what was compared
+	 */
+	public static void equal(Object expected, Object actual, String message) {
+		if (!Objects.equals(expected, actual)) {
+			throw new AssertionError(message + ": expected " + expected + " but was " + actual);
+		}
+	}
+
+	/**
+	 * Checks that the code throws the given exception
+	 * @param Class<? extends Throwable> type - the exception expected
+	 * @param Runnable code - the code to run
+	 */
+	public static void fails(Class<? extends Throwable> type, Runnable code) {
+		try {
+			code.run();
+		} catch (Throwable t) {
+			if (type.isInstance(t)) {
+				return;
+			}
+			throw new AssertionError("expected " + type.getSimpleName() + " but got " + t, t);
+		}
+		throw new AssertionError("expected " + type.getSimpleName() + " but nothing was thrown");
+	}
+
+	/**
+	 * Runs the code with System.out captured
+	 * @param Runnable code - the code to run
+	 * @return String - what it printed
+	 */
+	public static String stdout(Runnable code) {
+		PrintStream old = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+		try {
+			code.run();
+		} finally {
+			System.setOut(old);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Lists every string over the symbols up to the given length
+	 * @param String symbols - the alphabet
+	 * @param int max - the longest length
+	 * @return List<String> - the strings, shortest first, starting with the empty string
+	 */
+	public static List<String> strings(String symbols, int max) {
+		List<String> ret = new ArrayList<String>();
+		ret.add("");
+		int from = 0;
+		for (int len = 1; len <= max && !symbols.isEmpty(); len++) {
+			int to = ret.size();
+			for (int i = from; i < to; i++) {
+				for (char c : symbols.toCharArray()) {
+					ret.add(ret.get(i) + c);
+				}
+			}
+			from = to;
+		}
+		return ret;
+	}
+}
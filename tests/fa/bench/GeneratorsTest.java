@@ -0,0 +1,83 @@
+package fa.bench;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import fa.Tests;
+import fa.nfa.NFA;
+import fa.nfa.NFALoader;
+import fa.nfa.Reference;
+
+/**
+ * Tests for the machines and inputs the benchmarks are run on
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class GeneratorsTest {
+
+	/**
+	 * The exponential machine accepts (a|b)*a(a|b)^n with 2^(n+1) DFA states
+	 */
+	public static void testExponential() {
+		for (int n = 0; n <= 5; n++) {
+			NFA nfa = Generators.exponential(n);
+			equal(n + 2, nfa.getStates().size(), "NFA states " + n);
+			equal(1 << (n + 1), nfa.getDFA().getStates().size(), "DFA states " + n);
+			Pattern pattern = Pattern.compile("(a|b)*a(a|b){" + n + "}");
+			for (String s : Tests.strings("ab", n + 4)) {
+				equal(pattern.matcher(s).matches(), Reference.accepts(nfa, s), n + " on " + s);
+			}
+		}
+	}
+
+	/**
+	 * The e chain accepts any string of a, and the random machines have
+	 * the size and alphabet asked for and depend only on their seed
+	 */
+	public static void testShapes() {
+		NFA chain = Generators.epsilonChain(50);
+		equal(50, chain.getStates().size(), "chain states");
+		check(Reference.accepts(chain, "") && Reference.accepts(chain, "aaa"), "chain language");
+
+		NFA dense = Generators.denseRandom(30, 3, 1);
+		equal(30, dense.getStates().size(), "dense states");
+		equal("01", Reference.symbols(dense), "dense alphabet");
+		equal(dense.getDFA().toString(), Generators.denseRandom(30, 3, 1).getDFA().toString(), "same seed");
+
+		NFA wide = Generators.largeAlphabet(20, 100, 2);
+		equal(20, wide.getStates().size(), "wide states");
+		equal(100, Reference.symbols(wide).length(), "wide alphabet");
+
+		String[] strings = Generators.strings(new char[] {'x', 'y'}, 10, 7, 3);
+		equal(10, strings.length, "string count");
+		for (String s : strings) {
+			check(s.length() == 7 && s.replaceAll("[xy]", "").isEmpty(), s);
+		}
+	}
+
+	/**
+	 * The driver file can be read back by the loader
+	 */
+	public static void testDriverFile() throws Exception {
+		Path file = Files.createTempFile("driver", ".txt");
+		try {
+			Files.write(file, Generators.driverFile(200, 5, 4).getBytes(StandardCharsets.US_ASCII));
+			try (NFALoader loader = new NFALoader(file)) {
+				NFA nfa = loader.readNFA();
+				equal(26, nfa.getStates().size(), "states");
+				int tests = 0;
+				for (String s = loader.nextTestString(); s != null; s = loader.nextTestString()) {
+					equal(16, s.length(), "test string");
+					tests++;
+				}
+				equal(5, tests, "test strings");
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import fa.Tests;
+import fa.nfa.Reference;
+
+/**
+ * Tests for the table driven copy of a DFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class CompiledDFATest {
+
+	/**
+	 * The compiled DFA accepts what the DFA does, including foreign symbols
+	 */
+	public static void testRandomAgainstDFA() {
+		Random r = new Random(4);
+		for (int i = 0; i < 200; i++) {
+			DFA dfa = Reference.random(r, 1 + r.nextInt(6), "012e", r.nextInt(15)).getDFA();
+			CompiledDFA compiled = dfa.compile();
+			equal(dfa.getStates().size(), compiled.getStateCount(), "state count " + i);
+			DFA back = compiled.toDFA();
+			for (String s : Tests.strings("0123", 4)) {
+				String in = Reference.dfaInput(s);
+				boolean expected = dfa.getABC().containsAll(Reference.chars(s)) && dfa.accepts(in);
+				equal(expected, compiled.accepts(in), "DFA " + i + " on " + s);
+				equal(expected, back.getABC().containsAll(Reference.chars(s)) && back.accepts(in),
+						"toDFA " + i + " on " + s);
+			}
+		}
+	}
+
+	/**
+	 * Stepping by hand follows the DFA's transitions and names
+	 */
+	public static void testStepsAndNames() {
+		DFA dfa = new DFA();
+		dfa.addStates(Arrays.asList("even", "odd"));
+		dfa.setStartState("even");
+		dfa.addFinalStates(Arrays.asList("done"));
+		dfa.addTransitions(new String[] {"even", "even", "odd", "odd"}, new char[] {'1', '0', '1', '0'},
+				new String[] {"odd", "even", "even", "done"});
+		CompiledDFA compiled = dfa.compile();
+		int s = compiled.getStartState();
+		equal("even", compiled.getName(s), "start");
+		s = compiled.step(s, '1');
+		equal("odd", compiled.getName(s), "after 1");
+		equal(-1, compiled.step(s, 'x'), "foreign symbol");
+		s = compiled.step(s, '0');
+		equal("done", compiled.getName(s), "after 10");
+		check(compiled.isFinal(s), "done is final");
+		equal(-1, compiled.step(s, '0'), "missing transition");
+		check(!compiled.accepts("e"), "empty string");
+	}
+
+	/**
+	 * Matching allocates nothing once it is warmed up
+	 */
+	public static void testAcceptsDoesNotAllocate() {
+		CompiledDFA compiled = Reference.random(new Random(40), 8, "01e", 30).getDFA().compile();
+		List<String> inputs = Tests.strings("01", 10);
+		boolean sink = false;
+		for (int i = 0; i < 20; i++) {
+			for (String s : inputs) {
+				sink ^= compiled.accepts(s);
+			}
+		}
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long id = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(id);
+		for (String s : inputs) {
+			sink ^= compiled.accepts(s);
+		}
+		long bytes = threads.getThreadAllocatedBytes(id) - before;
+		//the loop over a list itself may allocate an iterator
+		check(bytes < 1024, inputs.size() + " matches allocated " + bytes + " bytes " + sink);
+	}
+
+	/**
+	 * Classifying a batch in parallel gives each input's own answer in its place
+	 */
+	public static void testAcceptsAll() {
+		Random r = new Random(9);
+		CompiledDFA compiled = Reference.random(r, 6, "01e", 20).getDFA().compile();
+		List<String> inputs = new ArrayList<String>();
+		//enough inputs to be split into several tasks
+		for (int i = 0; i < 5000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int len = r.nextInt(12);
+			for (int j = 0; j < len; j++) {
+				sb.append("012".charAt(r.nextInt(3)));
+			}
+			inputs.add(Reference.dfaInput(sb.toString()));
+		}
+		boolean[] expected = new boolean[inputs.size()];
+		for (int i = 0; i < expected.length; i++) {
+			expected[i] = compiled.accepts(inputs.get(i));
+		}
+		check(Arrays.equals(expected, compiled.acceptsAll(inputs)), "common pool");
+		check(Arrays.equals(expected, compiled.acceptsAll(new LinkedList<String>(inputs))), "linked list");
+		for (int threads : new int[] {1, 3}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				check(Arrays.equals(expected, compiled.acceptsAll(inputs, pool)), threads + " threads");
+			} finally {
+				pool.shutdown();
+			}
+		}
+		equal(0, compiled.acceptsAll(new ArrayList<String>()).length, "empty batch");
+	}
+
+	/**
+	 * Two symbols share a class exactly when they lead every state to
+	 * the same place, and the table is as wide as the classes
+	 */
+	public static void testSymbolClasses() {
+		Random r = new Random(18);
+		for (int i = 0; i < 200; i++) {
+			CompiledDFA compiled = Reference.random(r, 1 + r.nextInt(4), "0123e", r.nextInt(12)).getDFA().compile();
+			char[] abc = compiled.getABC();
+			check(compiled.getClassCount() <= abc.length, "class count " + i);
+			boolean[] used = new boolean[compiled.getClassCount()];
+			for (char a : abc) {
+				used[compiled.getSymbolClass(a)] = true;
+				for (char b : abc) {
+					boolean same = true;
+					for (int q = 0; q < compiled.getStateCount(); q++) {
+						same &= compiled.step(q, a) == compiled.step(q, b);
+					}
+					equal(same, compiled.getSymbolClass(a) == compiled.getSymbolClass(b), "DFA " + i + " " + a + b);
+				}
+			}
+			for (boolean u : used) {
+				check(u, "unused class in " + i);
+			}
+			equal(-1, compiled.getSymbolClass('x'), "foreign symbol");
+		}
+	}
+
+	/**
+	 * A wide alphabet whose letters and digits each behave alike
+	 * compiles to a table two classes wide
+	 */
+	public static void testWideAlphabet() {
+		DFA dfa = new DFA();
+		dfa.addStartState("s");
+		dfa.addFinalState("t");
+		for (char c = 'a'; c <= 'z'; c++) {
+			dfa.addTransition("s", c, "t");
+		}
+		for (char c = '0'; c <= '9'; c++) {
+			dfa.addTransition("t", c, "s");
+		}
+		CompiledDFA compiled = dfa.compile();
+		equal(36, compiled.getABC().length, "alphabet");
+		equal(2, compiled.getClassCount(), "classes");
+		check(compiled.getSymbolClass('a') == compiled.getSymbolClass('q'), "letters");
+		check(compiled.getSymbolClass('a') != compiled.getSymbolClass('5'), "letters and digits");
+		check(compiled.accepts("a1b2c") && !compiled.accepts("ab"), "matching");
+	}
+}
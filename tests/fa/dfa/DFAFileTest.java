@@ -0,0 +1,122 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import fa.Tests;
+import fa.nfa.NFA;
+import fa.nfa.Reference;
+
+/**
+ * Tests for saving compiled DFAs and loading them back
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFAFileTest {
+
+	//offsets of the header fields
+	private static final int STATE_COUNT = 8;
+	private static final int START = 12;
+	private static final int WIDTH = 20;
+	private static final int ALPHABET = 24;
+
+	/**
+	 * A loaded DFA matches and names its states like the saved one
+	 */
+	public static void testRoundTrip() throws IOException {
+		Random r = new Random(12);
+		Path file = Files.createTempFile("dfa", ".cdfa");
+		try {
+			for (int i = 0; i < 50; i++) {
+				NFA nfa = Reference.random(r, 1 + r.nextInt(6), "01e", r.nextInt(12));
+				CompiledDFA saved = nfa.getDFA().compile();
+				boolean withNames = r.nextBoolean();
+				DFAFile.save(saved, file, withNames);
+				CompiledDFA loaded = DFAFile.load(file);
+				equal(saved.getStateCount(), loaded.getStateCount(), "state count " + i);
+				equal(saved.getStartState(), loaded.getStartState(), "start state " + i);
+				if (withNames) {
+					for (int s = 0; s < saved.getStateCount(); s++) {
+						equal(saved.getName(s), loaded.getName(s), "name " + i);
+					}
+				}
+				for (String s : Tests.strings("012", 4)) {
+					String in = Reference.dfaInput(s);
+					equal(saved.accepts(in), loaded.accepts(in), "DFA " + i + " on " + s);
+				}
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Every kind of damage is reported as an IOException with an offset
+	 */
+	public static void testCorruptFiles() throws IOException {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addFinalState("b");
+		nfa.addTransition("a", '0', "b");
+		nfa.addTransition("b", '1', "a");
+		Path file = Files.createTempFile("dfa", ".cdfa");
+		try {
+			DFAFile.save(nfa.getDFA().compile(), file, true);
+			byte[] good = Files.readAllBytes(file);
+			ByteBuffer header = ByteBuffer.wrap(good);
+			int states = header.getInt(STATE_COUNT);
+			int abcSize = header.getInt(16);
+			int width = header.getInt(WIDTH);
+			int columns = ALPHABET + 2 * abcSize;
+			int table = columns + 4 * abcSize;
+
+			corrupt(file, good, START, states, "start state past the end");
+			corrupt(file, good, START, -2, "negative start state");
+			corrupt(file, good, START, -1, "no start state");
+			corrupt(file, good, STATE_COUNT, -1, "negative state count");
+			corrupt(file, good, STATE_COUNT, 1 << 30, "table size overflow");
+			corrupt(file, good, WIDTH, abcSize + 1, "width over the alphabet");
+			corrupt(file, good, columns, width, "column past the width");
+			corrupt(file, good, table, states, "transition past the end");
+			corrupt(file, good, table + 4, -7, "negative transition");
+			if (width > 1) {
+				//every symbol in column 0 leaves the other columns without one
+				byte[] bytes = good.clone();
+				for (int i = 0; i < abcSize; i++) {
+					ByteBuffer.wrap(bytes).putInt(columns + 4 * i, 0);
+				}
+				Files.write(file, bytes);
+				loadFails(file, "unused column");
+			}
+			Files.write(file, Arrays.copyOf(good, good.length - 3));
+			loadFails(file, "truncated");
+			Files.write(file, Arrays.copyOf(good, 10));
+			loadFails(file, "truncated header");
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void corrupt(Path file, byte[] good, int offset, int value, String what) throws IOException {
+		byte[] bytes = good.clone();
+		ByteBuffer.wrap(bytes).putInt(offset, value);
+		Files.write(file, bytes);
+		loadFails(file, what);
+	}
+
+	private static void loadFails(Path file, String what) {
+		try {
+			DFAFile.load(file);
+		} catch (IOException e) {
+			check(e.getMessage().contains("offset"), what + ": " + e.getMessage());
+			return;
+		}
+		throw new AssertionError(what + ": loaded without an error");
+	}
+}
@@ -0,0 +1,159 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import fa.Tests;
+import fa.nfa.Reference;
+import fa.nfa.Regex;
+
+/**
+ * Tests for running a compiled DFA over input fed in chunks
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFAMatcherTest {
+
+	/**
+	 * Any way of cutting the input into chunks gives the answer of accepts
+	 */
+	public static void testChunksAgainstAccepts() {
+		Random r = new Random(10);
+		for (int i = 0; i < 100; i++) {
+			CompiledDFA dfa = Reference.random(r, 1 + r.nextInt(6), "01e", r.nextInt(15)).getDFA().compile();
+			DFAMatcher matcher = new DFAMatcher(dfa);
+			for (String s : Tests.strings("012", 5)) {
+				matcher.reset();
+				int from = 0;
+				int kind = 0;
+				while (from < s.length()) {
+					int to = from + 1 + r.nextInt(s.length() - from);
+					String chunk = s.substring(from, to);
+					switch (kind++ % 3) {
+						case 0:
+							matcher.feed(chunk);
+							break;
+						case 1:
+							matcher.feed(CharBuffer.wrap(chunk));
+							break;
+						default:
+							matcher.feed(ByteBuffer.wrap(chunk.getBytes(StandardCharsets.ISO_8859_1)));
+					}
+					from = to;
+				}
+				boolean expected = s.isEmpty() ? dfa.isFinal(dfa.getStartState()) : dfa.accepts(s);
+				equal(expected, matcher.isAccepting(), "DFA " + i + " on " + s);
+				equal((long) s.length(), matcher.getPosition(), "position");
+			}
+		}
+	}
+
+	/**
+	 * Buffers are read from their position and left at their limit,
+	 * and a missing transition kills the run for good
+	 */
+	public static void testBuffersAndDeadRuns() {
+		DFA dfa = new DFA();
+		dfa.addFinalState("s");
+		dfa.setStartState("s");
+		dfa.addState("a");
+		dfa.addTransition("s", 'a', "a");
+		dfa.addTransition("a", 'b', "s");
+		DFAMatcher matcher = new DFAMatcher(dfa.compile());
+		CharBuffer chars = CharBuffer.wrap("xxabab");
+		chars.position(2);
+		matcher.feed(chars);
+		equal(6, chars.position(), "char buffer position");
+		check(matcher.isAccepting(), "abab");
+		ByteBuffer bytes = ByteBuffer.wrap("ab".getBytes(StandardCharsets.ISO_8859_1));
+		matcher.feed(bytes);
+		equal(2, bytes.position(), "byte buffer position");
+		check(matcher.isAccepting(), "ababab");
+		matcher.feed("b");
+		check(matcher.isDead(), "dead after bb");
+		matcher.feed("ab");
+		check(matcher.isDead() && !matcher.isAccepting(), "stays dead");
+		equal(9L, matcher.getPosition(), "position");
+		matcher.reset();
+		check(matcher.isAccepting() && !matcher.isDead(), "reset");
+	}
+
+	/**
+	 * A file is matched through its mapped bytes
+	 */
+	public static void testMatchesFile() throws IOException {
+		CompiledDFA dfa = Regex.toNFA("(0|1)*1").getDFA().compile();
+		Path file = Files.createTempFile("input", ".txt");
+		try {
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < 100000; i++) {
+				text.append(i % 3 == 0 ? '0' : '1');
+			}
+			Files.write(file, (text + "1").getBytes(StandardCharsets.ISO_8859_1));
+			check(DFAMatcher.matchesFile(dfa, file), "ends in 1");
+			Files.write(file, (text + "0").getBytes(StandardCharsets.ISO_8859_1));
+			check(!DFAMatcher.matchesFile(dfa, file), "ends in 0");
+			Files.write(file, (text + "2").getBytes(StandardCharsets.ISO_8859_1));
+			check(!DFAMatcher.matchesFile(dfa, file), "foreign symbol");
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Bytes are decoded with the matcher's charset, characters split
+	 * between chunks are put together, and invalid bytes are an error
+	 */
+	public static void testCharsets() throws IOException {
+		DFA dfa = new DFA();
+		dfa.addState("s");
+		dfa.addFinalState("f");
+		dfa.setStartState("s");
+		dfa.addTransition("s", '\u00e9', "f");
+		dfa.addTransition("f", 'a', "s");
+		CompiledDFA compiled = dfa.compile();
+		byte[] utf8 = "\u00e9a\u00e9".getBytes(StandardCharsets.UTF_8);
+		for (int cut = 0; cut <= utf8.length; cut++) {
+			DFAMatcher matcher = new DFAMatcher(compiled, StandardCharsets.UTF_8);
+			matcher.feed(ByteBuffer.wrap(utf8, 0, cut));
+			equal(cut == 2 || cut == utf8.length, matcher.isAccepting(), "after " + cut + " bytes");
+			matcher.feed(ByteBuffer.wrap(utf8, cut, utf8.length - cut));
+			check(matcher.isAccepting(), "cut at " + cut);
+			equal(3L, matcher.getPosition(), "characters");
+		}
+		//read as ISO-8859-1 the same bytes are four other characters
+		check(!new DFAMatcher(compiled).feed(ByteBuffer.wrap(utf8)).isAccepting(), "ISO-8859-1");
+		DFAMatcher matcher = new DFAMatcher(compiled, StandardCharsets.UTF_8);
+		fails(IllegalArgumentException.class, () -> matcher.feed(ByteBuffer.wrap(new byte[] {(byte) 0xE9, 'a'})));
+
+		Path file = Files.createTempFile("input", ".txt");
+		try {
+			Files.write(file, utf8);
+			check(DFAMatcher.matchesFile(compiled, file, StandardCharsets.UTF_8), "UTF-8 file");
+			check(!DFAMatcher.matchesFile(compiled, file), "ISO-8859-1 file");
+			Files.write(file, new byte[] {(byte) 0xE9});
+			matchFails(compiled, file, "invalid byte");
+			Files.write(file, new byte[] {(byte) 0xC3});
+			matchFails(compiled, file, "half a character");
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void matchFails(CompiledDFA dfa, Path file, String what) {
+		try {
+			DFAMatcher.matchesFile(dfa, file, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return;
+		}
+		throw new AssertionError(what + ": matched without an error");
+	}
+}
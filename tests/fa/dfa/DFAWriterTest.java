@@ -0,0 +1,105 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import fa.bench.Generators;
+import fa.nfa.Reference;
+
+/**
+ * Tests for streaming the text and DOT forms of a DFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFAWriterTest {
+
+	/**
+	 * The streamed text is the table the old toString formatted, whether
+	 * it goes to a Writer or through toString
+	 */
+	public static void testTextFormat() throws IOException {
+		Random r = new Random(14);
+		for (int i = 0; i < 100; i++) {
+			DFA dfa = Reference.random(r, 1 + r.nextInt(6), "01e", r.nextInt(15)).getDFA();
+			String expected = formatted(dfa);
+			StringWriter out = new StringWriter();
+			DFAWriter.write(dfa, out);
+			equal(expected, out.toString(), "Writer " + i);
+			equal(expected, dfa.toString(), "toString " + i);
+		}
+	}
+
+	/**
+	 * Final and start states are marked, symbols between the same two
+	 * states share an edge and names are quoted
+	 */
+	public static void testDot() throws IOException {
+		DFA dfa = new DFA();
+		dfa.addStartState("a\"b");
+		dfa.addFinalState("c");
+		dfa.addTransition("a\"b", '0', "c");
+		dfa.addTransition("a\"b", '1', "c");
+		dfa.addTransition("c", '0', "a\"b");
+		StringBuilder out = new StringBuilder();
+		DFAWriter.writeDot(dfa, out);
+		String expected = "digraph DFA {\n"
+				+ "\trankdir=LR;\n"
+				+ "\tnode [shape=circle];\n"
+				+ "\t\"c\" [shape=doublecircle];\n"
+				+ "\t__start [shape=point];\n"
+				+ "\t__start -> \"a\\\"b\";\n"
+				+ "\t\"a\\\"b\" -> \"c\" [label=\"0,1\"];\n"
+				+ "\t\"c\" -> \"a\\\"b\" [label=\"0\"];\n"
+				+ "}\n";
+		equal(expected, out.toString(), "DOT");
+	}
+
+	/**
+	 * Printing a DFA with tens of thousands of states takes time linear
+	 * in the output
+	 */
+	public static void testLargeDFA() {
+		DFA dfa = Generators.exponential(14).getDFA();
+		long t0 = System.nanoTime();
+		String s = dfa.toString();
+		long ms = (System.nanoTime() - t0) / 1000000;
+		check(s.startsWith("Q = { ") && s.endsWith("}\n"), "text");
+		//concatenating the table took minutes here
+		check(ms < 5000, "took " + ms + " ms");
+	}
+
+	/**
+	 * The text form as DFA.toString first built it
+	 */
+	private static String formatted(DFA dfa) {
+		StringBuilder s = new StringBuilder("Q = { ");
+		StringBuilder fStates = new StringBuilder("F = { ");
+		for (DFAState state : dfa.getStates()) {
+			s.append(state).append(' ');
+			if (state.isFinal()) {
+				fStates.append(state).append(' ');
+			}
+		}
+		s.append("}\nSigma = { ");
+		for (char c : dfa.getABC()) {
+			s.append(c).append(' ');
+		}
+		s.append("}\ndelta =\n").append(String.format("%10s", ""));
+		for (char c : dfa.getABC()) {
+			s.append(String.format("%10s", c));
+		}
+		s.append('\n');
+		for (DFAState state : dfa.getStates()) {
+			s.append(String.format("%10s", state));
+			for (char c : dfa.getABC()) {
+				s.append(String.format("%10s", state.getTo(c)));
+			}
+			s.append('\n');
+		}
+		s.append("q0 = ").append(dfa.getStartState()).append('\n');
+		return s.append(fStates).append("}\n").toString();
+	}
+}
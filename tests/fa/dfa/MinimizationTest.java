@@ -0,0 +1,112 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import fa.Tests;
+import fa.bench.Generators;
+import fa.nfa.Reference;
+
+/**
+ * Tests for minimizing DFAs
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class MinimizationTest {
+
+	/**
+	 * The minimal DFA accepts the same strings and no two of its states
+	 * accept the same strings, as found by filling in the table of
+	 * distinguishable pairs
+	 */
+	public static void testRandomIsMinimal() {
+		Random r = new Random(7);
+		for (int i = 0; i < 200; i++) {
+			DFA dfa = Reference.random(r, 1 + r.nextInt(6), "01e", r.nextInt(15)).getDFA();
+			Minimization m = dfa.minimize();
+			DFA min = m.getDFA();
+			check(min.getStates().size() <= dfa.getStates().size(), "state count " + i);
+			for (String s : Tests.strings("01", 6)) {
+				if (dfa.getABC().containsAll(Reference.chars(s))) {
+					equal(dfa.accepts(Reference.dfaInput(s)), min.accepts(Reference.dfaInput(s)), "DFA " + i + " on " + s);
+				}
+			}
+			List<DFAState> states = new ArrayList<DFAState>(min.getStates());
+			boolean[][] different = distinguishable(states, min.getABC());
+			for (int a = 0; a < states.size(); a++) {
+				for (int b = a + 1; b < states.size(); b++) {
+					check(different[a][b], "DFA " + i + " keeps equivalent " + states.get(a) + " and " + states.get(b));
+				}
+			}
+			for (Map.Entry<DFAState, DFAState> e : m.getStateMap().entrySet()) {
+				equal(e.getKey().isFinal(), e.getValue().isFinal(), "mapped finality " + i);
+			}
+		}
+	}
+
+	/**
+	 * A DFA that is already minimal keeps every state
+	 */
+	public static void testMinimalStaysTheSame() {
+		DFA dfa = Generators.exponential(5).getDFA();
+		equal(64, dfa.getStates().size(), "subsets");
+		equal(64, dfa.minimize().getDFA().getStates().size(), "minimal states");
+	}
+
+	/**
+	 * Fills in the table of pairs told apart by some string, with missing
+	 * transitions going to a rejecting sink
+	 */
+	private static boolean[][] distinguishable(List<DFAState> states, Iterable<Character> abc) {
+		int n = states.size();
+		Map<DFAState, Integer> ids = new HashMap<DFAState, Integer>();
+		for (int s = 0; s < n; s++) {
+			ids.put(states.get(s), s);
+		}
+		//state n is the sink
+		boolean[][] ret = new boolean[n + 1][n + 1];
+		for (int a = 0; a <= n; a++) {
+			for (int b = 0; b <= n; b++) {
+				ret[a][b] = accepting(states, a) != accepting(states, b);
+			}
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int a = 0; a <= n; a++) {
+				for (int b = 0; b <= n; b++) {
+					if (ret[a][b]) {
+						continue;
+					}
+					for (char c : abc) {
+						int ta = next(states, ids, a, c);
+						int tb = next(states, ids, b, c);
+						if (ret[ta][tb]) {
+							ret[a][b] = true;
+							changed = true;
+							break;
+						}
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	private static boolean accepting(List<DFAState> states, int s) {
+		return s < states.size() && states.get(s).isFinal();
+	}
+
+	private static int next(List<DFAState> states, Map<DFAState, Integer> ids, int s, char c) {
+		if (s == states.size()) {
+			return s;
+		}
+		DFAState to = states.get(s).getToIfPresent(c);
+		return to == null ? states.size() : ids.get(to);
+	}
+}
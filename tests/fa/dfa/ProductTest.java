@@ -0,0 +1,106 @@
+package fa.dfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import fa.Tests;
+import fa.nfa.NFA;
+import fa.nfa.Reference;
+import fa.nfa.Regex;
+
+/**
+ * Tests for the product, complement and lazy product of DFAs
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ProductTest {
+
+	/**
+	 * Pairs whose names would read the same stay different states
+	 */
+	public static void testPairNamesDontCollide() {
+		//x accepts strings ending in 1, y the empty string and strings ending in 0
+		DFA x = new DFA();
+		x.addState("a");
+		x.addFinalState("a, b");
+		x.setStartState("a");
+		x.addTransitions(new String[] {"a", "a", "a, b", "a, b"}, new char[] {'0', '1', '0', '1'},
+				new String[] {"a", "a, b", "a", "a, b"});
+		DFA y = new DFA();
+		y.addFinalState("b, c");
+		y.addState("c");
+		y.setStartState("b, c");
+		y.addTransitions(new String[] {"b, c", "b, c", "c", "c"}, new char[] {'0', '1', '0', '1'},
+				new String[] {"b, c", "c", "b, c", "c"});
+		DFA union = x.union(y);
+		DFA intersection = x.intersect(y);
+		DFA difference = x.difference(y);
+		for (String s : Tests.strings("01", 5)) {
+			check(union.accepts(Reference.dfaInput(s)), "union on " + s);
+			check(!intersection.accepts(Reference.dfaInput(s)), "intersection on " + s);
+			equal(s.endsWith("1"), difference.accepts(Reference.dfaInput(s)), "difference on " + s);
+		}
+		//(a, b, c) twice: (a, b, c) and (a, b, c)1
+		equal(2, difference.getStates().size(), "state count");
+		Set<String> names = new HashSet<String>();
+		for (DFAState s : difference.getStates()) {
+			names.add(s.getName());
+		}
+		equal(2, names.size(), "distinct names");
+	}
+
+	/**
+	 * Pairs that can't reach acceptance are one state, even when their
+	 * members are sink states such as the empty subset of getDFA
+	 */
+	public static void testDeadPairsMerge() {
+		DFA a = Regex.toNFA("0*").getDFA();
+		DFA b = Regex.toNFA("1*").getDFA();
+		DFA and = a.intersect(b);
+		equal(2, and.getStates().size(), "states of " + and);
+		check(and.accepts("e") && !and.accepts("0") && !and.accepts("1") && !and.accepts("01"), "language");
+		Set<String> names = new HashSet<String>();
+		for (DFAState s : and.getStates()) {
+			names.add(s.getName());
+		}
+		check(names.contains("(-, -)"), "dead pair in " + names);
+		DFA empty = Regex.toNFA("0").getDFA().intersect(Regex.toNFA("1").getDFA());
+		equal(1, empty.getStates().size(), "empty intersection");
+		check(!empty.accepts("e") && !empty.accepts("0"), "empty language");
+	}
+
+	/**
+	 * Every operation agrees with the NFAs the DFAs came from
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(19);
+		for (int i = 0; i < 200; i++) {
+			NFA na = Reference.random(r, 1 + r.nextInt(5), r.nextBoolean() ? "01e" : "0e", r.nextInt(10));
+			NFA nb = Reference.random(r, 1 + r.nextInt(5), r.nextBoolean() ? "01e" : "1e", r.nextInt(10));
+			DFA a = na.getDFA();
+			DFA b = nb.getDFA();
+			DFA and = a.intersect(b);
+			DFA or = a.union(b);
+			DFA minus = a.difference(b);
+			DFA not = a.complement();
+			LazyProduct lazy = new LazyProduct(a.compile(), b.compile(), SetOperation.INTERSECTION);
+			for (String s : Tests.strings("01", 5)) {
+				boolean inA = Reference.accepts(na, s);
+				boolean inB = Reference.accepts(nb, s);
+				String in = Reference.dfaInput(s);
+				if (and.getABC().containsAll(Reference.chars(s))) {
+					equal(inA && inB, and.accepts(in), "intersection " + i + " on " + s);
+					equal(inA || inB, or.accepts(in), "union " + i + " on " + s);
+					equal(inA && !inB, minus.accepts(in), "difference " + i + " on " + s);
+				}
+				if (not.getABC().containsAll(Reference.chars(s))) {
+					equal(!inA, not.accepts(in), "complement " + i + " on " + s);
+				}
+				equal(inA && inB, lazy.accepts(in), "lazy intersection " + i + " on " + s);
+			}
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fa.State;
+import fa.Tests;
+import fa.bench.Generators;
+import fa.dfa.DFA;
+
+/**
+ * Tests for the e closures every state of an NFA shares
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ClosureIndexTest {
+
+	/**
+	 * The index holds the states eClosure finds, and eClosure hands out
+	 * a copy in depth first order that the caller may change
+	 */
+	public static void testRandomAgainstDepthFirstSearch() {
+		Random r = new Random(2);
+		for (int i = 0; i < 300; i++) {
+			NFA nfa = Reference.random(r, 1 + r.nextInt(8), r.nextBoolean() ? "e" : "0ee", r.nextInt(20));
+			ClosureIndex index = nfa.closureIndex();
+			for (State s : nfa.getStates()) {
+				NFAState state = (NFAState) s;
+				Set<NFAState> expected = nfa.eClosure(state, new LinkedHashSet<NFAState>());
+				Set<NFAState> actual = nfa.eClosure(state);
+				equal(new ArrayList<NFAState>(expected), new ArrayList<NFAState>(actual),
+						"closure " + i + " of " + s.getName());
+				Set<NFAState> indexed = new HashSet<NFAState>();
+				for (int id : index.toArray(state.getId())) {
+					indexed.add(nfa.stateList().get(id));
+				}
+				equal(expected, indexed, "index " + i + " of " + s.getName());
+				actual.remove(state);
+				check(nfa.eClosure(state).contains(state), "copy " + i + " of " + s.getName());
+			}
+		}
+	}
+
+	/**
+	 * A long e chain neither overflows the stack nor stores a copy per state
+	 */
+	public static void testLongChainIsShared() {
+		int n = 100000;
+		NFA nfa = new NFA();
+		for (int i = 0; i < n; i++) {
+			nfa.addState("q" + i);
+		}
+		for (int i = n - 1; i > 0; i--) {
+			nfa.addEpsilonTransition("q" + (i - 1), "q" + i);
+		}
+		ClosureIndex index = nfa.closureIndex();
+		equal(n, index.members().length, "stored states");
+		equal(n, nfa.eClosure(nfa.state("q0")).size(), "closure of q0");
+		equal(1, nfa.eClosure(nfa.state("q" + (n - 1))).size(), "closure of the last state");
+		equal(nfa.state("q" + (n / 2 + 1)), nfa.eClosure(nfa.state("q" + n / 2)).toArray()[1], "second of q" + n / 2);
+	}
+
+	/**
+	 * The states of a long e cycle share one stored closure, and every
+	 * way of matching on the machine stays linear in its size
+	 */
+	public static void testLongCycleIsShared() {
+		int n = 10000;
+		NFA nfa = Generators.epsilonCycle(n);
+		long t0 = System.nanoTime();
+		ClosureIndex index = nfa.closureIndex();
+		equal(n, index.members().length, "stored states");
+		equal(1, index.componentCount(), "components");
+		equal(n, index.end(n - 1) - index.start(n - 1), "closure of the last state");
+		//the closures in the old order are only built on request
+		List<NFAState> closure = new ArrayList<NFAState>(nfa.eClosure(nfa.state("c" + n / 2)));
+		equal(nfa.state("c" + n / 2), closure.get(0), "first of c" + n / 2);
+		equal(nfa.state("c0"), closure.get(n - n / 2), "wrapped around to c0");
+		DFA dfa = nfa.getDFA();
+		equal(1, dfa.getStates().size(), "DFA states");
+		String name = dfa.getStartState().getName();
+		check(name.startsWith("[c0, c1, c2, ") && name.endsWith(", c" + (n - 1) + "]"), "name in cycle order");
+		check(dfa.accepts("e") && dfa.accepts("aaaa"), "DFA");
+		check(nfa.accepts("aaaa") && new LazyDFA(nfa).accepts("aaaa"), "simulation");
+		IncrementalDFA inc = new IncrementalDFA(nfa);
+		inc.addTransition("c1", 'b', "c2");
+		check(inc.getDFA().accepts("abaa"), "incremental");
+		long ms = (System.nanoTime() - t0) / 1000000;
+		check(ms < 5000, "took " + ms + " ms");
+	}
+
+	/**
+	 * A new e transition or state gives the NFA a new index
+	 */
+	public static void testChangesRebuildTheIndex() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addFinalState("b");
+		nfa.addTransition("a", '0', "b");
+		equal(1, nfa.eClosure(nfa.state("a")).size(), "closure before");
+		check(!nfa.accepts("e"), "empty string before");
+		nfa.addEpsilonTransition("a", "b");
+		equal(2, nfa.eClosure(nfa.state("a")).size(), "closure after");
+		check(nfa.accepts("e"), "empty string after");
+		nfa.addState("c");
+		nfa.addEpsilonTransition("b", "c");
+		equal(3, nfa.eClosure(nfa.state("a")).size(), "closure with a new state");
+	}
+
+	/**
+	 * Threads matching on an NFA that has no index yet all get the right answer
+	 */
+	public static void testConcurrentMatching() throws Exception {
+		Random r = new Random(22);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (int i = 0; i < 50; i++) {
+				final NFA nfa = Reference.random(r, 2 + r.nextInt(20), "01e", r.nextInt(60));
+				final List<String> inputs = Tests.strings("01", 6);
+				List<Boolean> expected = new ArrayList<Boolean>();
+				for (String s : inputs) {
+					expected.add(Reference.accepts(nfa, s));
+				}
+				List<Future<List<Boolean>>> results = new ArrayList<Future<List<Boolean>>>();
+				for (int t = 0; t < 4; t++) {
+					results.add(pool.submit(() -> {
+						List<Boolean> ret = new ArrayList<Boolean>();
+						for (String s : inputs) {
+							ret.add(nfa.accepts(Reference.dfaInput(s)));
+						}
+						return ret;
+					}));
+				}
+				for (Future<List<Boolean>> f : results) {
+					equal(expected, f.get(), "NFA " + i);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
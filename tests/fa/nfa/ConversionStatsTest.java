@@ -0,0 +1,124 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import fa.Tests;
+import fa.bench.Generators;
+import fa.dfa.DFA;
+import fa.dfa.DFAState;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Tests for the counters, timings and flight recorder events of conversions
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ConversionStatsTest {
+
+	/**
+	 * The counters describe the DFA that was built, and closures are
+	 * only missed while the closure index is built
+	 */
+	public static void testCounters() {
+		NFA nfa = Generators.epsilonChain(20);
+		int n = nfa.getStates().size();
+		ConversionStats stats = new ConversionStats();
+		DFA dfa = nfa.getDFA(stats);
+		equal(1L, stats.getConversions(), "conversions");
+		equal((long) dfa.getStates().size(), stats.getSubsetsExplored(), "subsets");
+		equal((long) dfa.getStates().size() * dfa.getABC().size(), stats.getTransitionsEmitted(), "transitions");
+		equal((long) n, stats.getClosureMisses(), "closures built");
+		check(stats.getClosureHits() > 0, "closures looked up");
+		//the one subset is expanded as soon as it is found
+		equal(0, stats.getPeakFrontier(), "frontier");
+		long total = 0;
+		for (ConversionStats.Phase p : ConversionStats.Phase.values()) {
+			check(stats.getNanos(p) >= 0, p + " time");
+			total += stats.getNanos(p);
+		}
+		equal(total, stats.getTotalNanos(), "total time");
+		check(stats.toString().contains("closure hits = " + stats.getClosureHits() + ", misses = " + n),
+				stats.toString());
+
+		//the second conversion reuses the closure index
+		long hits = stats.getClosureHits();
+		nfa.getDFA(stats);
+		equal(2L, stats.getConversions(), "conversions added up");
+		equal((long) n, stats.getClosureMisses(), "no closures built again");
+		equal(2 * hits, stats.getClosureHits(), "closures looked up again");
+
+		stats.reset();
+		equal(0L, stats.getConversions(), "reset conversions");
+		equal(0L, stats.getSubsetsExplored(), "reset subsets");
+		equal(0L, stats.getClosureHits(), "reset hits");
+		equal(0L, stats.getClosureMisses(), "reset misses");
+		equal(0L, stats.getTransitionsEmitted(), "reset transitions");
+		equal(0, stats.getPeakFrontier(), "reset frontier");
+		equal(0L, stats.getTotalNanos(), "reset time");
+	}
+
+	/**
+	 * A recording with the events enabled gets one for each conversion
+	 * and bulk match, carrying the same numbers as the stats
+	 */
+	public static void testFlightRecording() throws Exception {
+		NFA nfa = Generators.exponential(6);
+		List<String> inputs = Tests.strings("ab", 8);
+		ConversionStats stats = new ConversionStats();
+		Path file = Files.createTempFile("conversion", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("fa.NFAConversion");
+			recording.enable("fa.DFAMatch");
+			recording.start();
+			boolean[] accepted = nfa.getDFA(stats).compile().acceptsAll(inputs);
+			recording.stop();
+			recording.dump(file);
+			int count = 0;
+			for (boolean b : accepted) {
+				count += b ? 1 : 0;
+			}
+			List<RecordedEvent> conversions = new ArrayList<RecordedEvent>();
+			List<RecordedEvent> matches = new ArrayList<RecordedEvent>();
+			for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+				String name = e.getEventType().getName();
+				if (name.equals("fa.NFAConversion")) {
+					conversions.add(e);
+				} else if (name.equals("fa.DFAMatch")) {
+					matches.add(e);
+				}
+			}
+			equal(1, conversions.size(), "conversion events");
+			RecordedEvent conversion = conversions.get(0);
+			equal(nfa.getStates().size(), conversion.getInt("nfaStates"), "NFA states");
+			equal(stats.getSubsetsExplored(), conversion.getLong("subsets"), "subsets");
+			equal(stats.getClosureMisses(), conversion.getLong("closureMisses"), "misses");
+			equal(stats.getTransitionsEmitted(), conversion.getLong("transitions"), "transitions");
+			check(stats.getPeakFrontier() > 0, "frontier");
+			equal(stats.getPeakFrontier(), conversion.getInt("peakFrontier"), "event frontier");
+			equal(1, matches.size(), "match events");
+			equal((long) inputs.size(), matches.get(0).getLong("inputs"), "inputs");
+			equal((long) count, matches.get(0).getLong("accepted"), "accepted");
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Conversions without stats or a recording still build the DFA
+	 */
+	public static void testUnmeasured() {
+		NFA nfa = Generators.exponential(3);
+		DFA dfa = nfa.getDFA((ConversionStats) null);
+		equal(16, dfa.getStates().size(), "states");
+		for (DFAState s : dfa.getStates()) {
+			check(s.getName() != null, "named");
+		}
+	}
+}
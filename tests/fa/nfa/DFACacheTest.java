@@ -0,0 +1,99 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import fa.bench.Generators;
+import fa.dfa.DFA;
+
+/**
+ * Tests for the DFA an NFA keeps until it is changed
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class DFACacheTest {
+
+	/**
+	 * The same DFA comes back until a state or transition is added
+	 */
+	public static void testChangesRebuild() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addFinalState("b");
+		nfa.addTransition("a", '0', "b");
+		DFA first = nfa.getDFA();
+		check(first == nfa.getDFA(), "unchanged");
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			check(first == nfa.getDFA(pool), "parallel shares the cache");
+		} finally {
+			pool.shutdown();
+		}
+
+		nfa.addTransition("b", '1', "a");
+		DFA second = nfa.getDFA();
+		check(second != first, "after addTransition");
+		check(second.accepts("010"), "new transition used");
+
+		nfa.addState("c");
+		DFA third = nfa.getDFA();
+		check(third != second, "after addState");
+
+		nfa.addFinalState("d");
+		check(nfa.getDFA() != third, "after addFinalState");
+		third = nfa.getDFA();
+
+		nfa.addStartState("c");
+		DFA fourth = nfa.getDFA();
+		check(fourth != third, "after addStartState");
+		check(!fourth.accepts("0"), "new start state used");
+
+		//adding a name that is taken changes nothing
+		nfa.addState("a");
+		check(fourth == nfa.getDFA(), "existing name");
+	}
+
+	/**
+	 * Asking for statistics always converts, and caches what it built
+	 */
+	public static void testStatsConvert() {
+		NFA nfa = Generators.exponential(4);
+		DFA cached = nfa.getDFA();
+		ConversionStats stats = new ConversionStats();
+		DFA measured = nfa.getDFA(stats);
+		check(measured != cached, "stats convert again");
+		equal(1L, stats.getConversions(), "conversions");
+		equal((long) measured.getStates().size(), stats.getSubsetsExplored(), "subsets");
+		check(measured == nfa.getDFA(), "measured result is cached");
+	}
+
+	/**
+	 * Threads asking at the same time are all handed one instance
+	 */
+	public static void testConcurrentCallers() throws Exception {
+		NFA nfa = Generators.exponential(10);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<DFA>> calls = new ArrayList<Callable<DFA>>();
+			for (int i = 0; i < 16; i++) {
+				calls.add(nfa::getDFA);
+			}
+			DFA first = null;
+			for (Future<DFA> f : threads.invokeAll(calls)) {
+				if (first == null) {
+					first = f.get();
+				}
+				check(first == f.get(), "one instance");
+			}
+		} finally {
+			threads.shutdown();
+		}
+	}
+}
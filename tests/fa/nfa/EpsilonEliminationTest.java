@@ -0,0 +1,70 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.Random;
+
+import fa.Tests;
+import fa.bench.Generators;
+
+/**
+ * Tests for removing the e transitions of an NFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class EpsilonEliminationTest {
+
+	/**
+	 * The e free NFA accepts what the reference simulation of the
+	 * original does, and the original is left alone
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(23);
+		for (int i = 0; i < 300; i++) {
+			NFA nfa = Reference.random(r, 1 + r.nextInt(8), "01e", r.nextInt(20));
+			String before = nfa.getDFA().toString();
+			int states = nfa.getStates().size();
+			NFA free = nfa.withoutEpsilons();
+			check(!free.getABC().contains('e'), "free transition in " + i);
+			check(free.getStates().size() <= states, "state count " + i);
+			for (String s : Tests.strings("01", 6)) {
+				equal(Reference.accepts(nfa, s), Reference.accepts(free, s), "NFA " + i + " on " + s);
+			}
+			equal(states, nfa.getStates().size(), "original states " + i);
+			equal(before, nfa.getDFA().toString(), "original DFA " + i);
+		}
+	}
+
+	/**
+	 * The states of an e cycle become one state named after the first
+	 */
+	public static void testCyclesMerge() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addState("b");
+		nfa.addState("c");
+		nfa.addFinalState("d");
+		nfa.addTransitions(new String[] {"a", "b", "c", "b", "c"}, new char[] {'e', 'e', 'e', '0', '1'},
+				new String[] {"b", "c", "a", "d", "d"});
+		NFA free = nfa.withoutEpsilons();
+		equal(2, free.getStates().size(), "states");
+		check(Reference.names(free).contains("a") && Reference.names(free).contains("d"), "names");
+		check(free.accepts("0") && free.accepts("1") && !free.accepts("e") && !free.accepts("00"), "language");
+	}
+
+	/**
+	 * A long e cycle is merged in time linear in its length, and the
+	 * closures of the original machine don't blow up either
+	 */
+	public static void testLongCycle() {
+		int n = 50000;
+		NFA nfa = Generators.epsilonCycle(n);
+		long t0 = System.nanoTime();
+		NFA free = nfa.withoutEpsilons();
+		equal(1, free.getStates().size(), "states");
+		check(free.accepts("e") && free.accepts("aa") && !free.accepts("b"), "language");
+		check(nfa.accepts("aa") && nfa.getDFA().accepts("aa"), "original");
+		long ms = (System.nanoTime() - t0) / 1000000;
+		check(ms < 5000, "took " + ms + " ms");
+	}
+}
@@ -0,0 +1,88 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.util.Random;
+
+import fa.Tests;
+import fa.dfa.DFA;
+
+/**
+ * Tests for patching the DFA of an NFA as transitions are added
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class IncrementalDFATest {
+
+	/**
+	 * After every added transition the patched DFA accepts what the NFA
+	 * does, and only e transitions build it again
+	 */
+	public static void testRandomAdditions() {
+		Random r = new Random(25);
+		for (int i = 0; i < 100; i++) {
+			int n = 1 + r.nextInt(6);
+			NFA nfa = Reference.random(r, n, "01e", r.nextInt(10));
+			IncrementalDFA inc = new IncrementalDFA(nfa);
+			DFA dfa = inc.getDFA();
+			int rebuilds = 1;
+			for (int k = 0; k < 12; k++) {
+				char c = "0012e".charAt(r.nextInt(5));
+				inc.addTransition("q" + r.nextInt(n), c, "q" + r.nextInt(n));
+				if (c == 'e') {
+					rebuilds++;
+					dfa = inc.getDFA();
+				}
+				equal(rebuilds, inc.getRebuildCount(), "rebuilds " + i);
+				check(dfa == inc.getDFA(), "patched in place " + i);
+				for (String s : Tests.strings("012", 5)) {
+					if (dfa.getABC().containsAll(Reference.chars(s))) {
+						equal(Reference.accepts(nfa, s), dfa.accepts(Reference.dfaInput(s)),
+								"NFA " + i + " step " + k + " on " + s);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * New states change nothing, and a change made to the NFA directly
+	 * is picked up by building the DFA again
+	 */
+	public static void testStatesAndDirectChanges() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addFinalState("b");
+		nfa.addTransition("a", '0', "b");
+		IncrementalDFA inc = new IncrementalDFA(nfa);
+		DFA dfa = inc.getDFA();
+		inc.addState("c");
+		inc.addFinalState("d");
+		check(dfa == inc.getDFA(), "new states");
+		equal(1, inc.getRebuildCount(), "no rebuild for states");
+
+		inc.addTransition("a", '1', "d");
+		check(dfa == inc.getDFA() && dfa.accepts("1"), "new symbol");
+		//a state that doesn't exist adds nothing
+		Tests.stdout(() -> inc.addTransition("a", '0', "x"));
+		check(dfa == inc.getDFA(), "missing state");
+
+		nfa.addTransition("b", '0', "a");
+		DFA rebuilt = inc.getDFA();
+		check(rebuilt != dfa, "direct change");
+		equal(2, inc.getRebuildCount(), "rebuilt once");
+		check(rebuilt.accepts("000") && !rebuilt.accepts("00"), "direct change seen");
+	}
+
+	/**
+	 * An NFA without a start state or with range transitions is refused
+	 */
+	public static void testBadNFAs() {
+		fails(IllegalStateException.class, () -> new IncrementalDFA(new NFA()));
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addRangeTransition("a", 'a', 'z', "a");
+		fails(IllegalStateException.class, () -> new IncrementalDFA(nfa));
+	}
+}
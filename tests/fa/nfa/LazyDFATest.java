@@ -0,0 +1,63 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.util.List;
+import java.util.Random;
+
+import fa.Tests;
+import fa.bench.Generators;
+
+/**
+ * Tests for the DFA that is built while inputs are matched
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class LazyDFATest {
+
+	/**
+	 * Every cache size and eviction policy gives the NFA's answers
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(6);
+		for (int i = 0; i < 150; i++) {
+			NFA nfa = Reference.random(r, 1 + r.nextInt(8), "01e", r.nextInt(20));
+			for (LazyDFA.Eviction eviction : LazyDFA.Eviction.values()) {
+				for (int max : new int[] {2, 3, LazyDFA.DEFAULT_MAX_STATES}) {
+					LazyDFA lazy = new LazyDFA(nfa, max, eviction);
+					for (String s : Tests.strings("012", 5)) {
+						equal(Reference.accepts(nfa, s), lazy.accepts(Reference.dfaInput(s)),
+								"NFA " + i + " " + eviction + " " + max + " on " + s);
+						check(lazy.getCachedStateCount() <= max, "cache size");
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A machine with exponentially many subsets stays within the cache
+	 * and evicts as it goes
+	 */
+	public static void testBoundedCache() {
+		NFA nfa = Generators.exponential(12);
+		List<String> inputs = Tests.strings("ab", 14);
+		for (LazyDFA.Eviction eviction : LazyDFA.Eviction.values()) {
+			LazyDFA lazy = new LazyDFA(nfa, 64, eviction);
+			for (String s : inputs.subList(inputs.size() - 4096, inputs.size())) {
+				equal(nfa.accepts(s), lazy.accepts(s), eviction + " on " + s);
+			}
+			check(lazy.getCachedStateCount() <= 64, eviction + " cache size " + lazy.getCachedStateCount());
+			check(lazy.getEvictionCount() > 0, eviction + " never evicted");
+		}
+	}
+
+	/**
+	 * A cache too small to hold a state and its successor is refused
+	 */
+	public static void testBadArguments() {
+		fails(IllegalArgumentException.class, () -> new LazyDFA(Regex.toNFA("0"), 1, LazyDFA.Eviction.FLUSH));
+		fails(IllegalStateException.class, () -> new LazyDFA(new NFA()));
+	}
+}
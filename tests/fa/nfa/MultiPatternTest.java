@@ -0,0 +1,61 @@
+package fa.nfa;
+
+import static fa.Tests.equal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import fa.Tests;
+import fa.dfa.MultiDFA;
+
+/**
+ * Tests for compiling many NFAs into one tagged DFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class MultiPatternTest {
+
+	/**
+	 * A pattern that accepts the empty string makes the start state
+	 * final, which must not print anything
+	 */
+	public static void testNullablePatternIsSilent() {
+		List<NFA> patterns = Arrays.asList(Regex.toNFA("1?"), Regex.toNFA("0"));
+		MultiDFA[] dfa = new MultiDFA[1];
+		equal("", Tests.stdout(() -> dfa[0] = MultiPattern.compile(patterns)), "output");
+		equal(0, dfa[0].firstMatch("e"), "empty string");
+		equal(1, dfa[0].firstMatch("0"), "0");
+		NFA nfa = Regex.toNFA("(01)*");
+		equal("", Tests.stdout(() -> nfa.getDFA()), "getDFA output");
+	}
+
+	/**
+	 * Every pattern's tag agrees with running the pattern on its own
+	 */
+	public static void testTagsAgainstReference() {
+		Random r = new Random(20);
+		for (int i = 0; i < 100; i++) {
+			List<NFA> patterns = new ArrayList<NFA>();
+			int k = 1 + r.nextInt(4);
+			for (int p = 0; p < k; p++) {
+				patterns.add(Reference.random(r, 1 + r.nextInt(4), "01e", r.nextInt(8)));
+			}
+			MultiDFA dfa = MultiPattern.compile(patterns);
+			equal(k, dfa.getPatternCount(), "pattern count");
+			NFA union = MultiPattern.union(patterns);
+			for (String s : Tests.strings(Reference.symbols(union), 5)) {
+				BitSet expected = new BitSet();
+				for (int p = 0; p < k; p++) {
+					if (Reference.accepts(patterns.get(p), s)) {
+						expected.set(p);
+					}
+				}
+				equal(expected, dfa.matches(Reference.dfaInput(s)), "patterns " + i + " on " + s);
+				equal(expected.isEmpty() ? -1 : expected.nextSetBit(0), dfa.firstMatch(Reference.dfaInput(s)),
+						"first match " + i + " on " + s);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * Tests for reading the NFADriver input format
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class NFALoaderTest {
+
+	/**
+	 * The four machine lines and the test strings are read in order
+	 */
+	public static void testReadsMachineAndTests() throws IOException {
+		for (String eol : new String[] {"\n", "\r\n", "\r"}) {
+			String text = String.join(eol, "b", "a", "c", "aeb a0c c1b", "0", "01", "e") + eol;
+			List<String> tests = new ArrayList<String>();
+			NFA nfa = load(text, tests);
+			equal(new HashSet<String>(Arrays.asList("a", "b", "c")), Reference.names(nfa), "states" + escape(eol));
+			equal("a", nfa.getStartState().getName(), "start state");
+			equal(1, nfa.getFinalStates().size(), "final states");
+			equal(Arrays.asList("0", "01", "e"), tests, "tests" + escape(eol));
+			check(nfa.accepts("01"), "accepts 01");
+			check(!nfa.accepts("0"), "rejects 0");
+		}
+	}
+
+	/**
+	 * Whitespace only lines are test strings unless nothing but whitespace follows
+	 */
+	public static void testBlankLinesLikeScanner() throws IOException {
+		List<String> tests = new ArrayList<String>();
+		load("a\na\n\na0a\n0\n   \n\n00\n  \n\n", tests);
+		equal(Arrays.asList("0", "   ", "", "00"), tests, "tests");
+	}
+
+	/**
+	 * A transition line longer than one batch keeps every transition
+	 */
+	public static void testLongTransitionLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		String letters = "abcdefghij";
+		for (int i = 0; i < 20000; i++) {
+			line.append(letters.charAt(i % 10)).append((char) ('0' + i / 10 % 10)).append(letters.charAt(i / 100 % 10))
+					.append(' ');
+		}
+		NFA nfa = load("a\na\nb c d e f g h i j\n" + line + "\n", new ArrayList<String>());
+		int count = 0;
+		for (State s : nfa.getStates()) {
+			for (char c : nfa.getABC()) {
+				Set<NFAState> to = nfa.getToState((NFAState) s, c);
+				count += to == null ? 0 : to.size();
+			}
+		}
+		equal(1000, count, "distinct transitions");
+	}
+
+	/**
+	 * A transition that is too short is reported
+	 */
+	public static void testMalformedTransition() throws IOException {
+		try {
+			load("a\na\n\na0a ab\n", new ArrayList<String>());
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		throw new AssertionError("a transition of two letters was read");
+	}
+
+	private static NFA load(String text, List<String> tests) throws IOException {
+		Path file = Files.createTempFile("nfa", ".txt");
+		try {
+			Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+			try (NFALoader loader = new NFALoader(file)) {
+				NFA nfa = loader.readNFA();
+				String test;
+				while ((test = loader.nextTestString()) != null) {
+					tests.add(test);
+				}
+				return nfa;
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static String escape(String eol) {
+		return " with " + eol.replace("\r", "\\r").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,70 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.util.Random;
+
+import fa.Tests;
+
+/**
+ * Tests for NFA.accepts, which simulates the NFA without determinizing it
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class NFASimulatorTest {
+
+	/**
+	 * Random NFAs agree with the reference simulation, also after being changed
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(5);
+		for (int i = 0; i < 300; i++) {
+			int n = 2 + r.nextInt(6);
+			NFA nfa = Reference.random(r, n, "01e", r.nextInt(14));
+			for (int round = 0; round < 2; round++) {
+				for (String s : Tests.strings(Reference.symbols(nfa), 6)) {
+					equal(Reference.accepts(nfa, s), nfa.accepts(Reference.dfaInput(s)), "NFA " + i + " on " + s);
+				}
+				nfa.addTransition("q" + r.nextInt(n), "01e".charAt(r.nextInt(3)), "q" + r.nextInt(n));
+			}
+		}
+	}
+
+	/**
+	 * Moving the start state is seen by the next call
+	 */
+	public static void testNewStartState() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addState("b");
+		nfa.addFinalState("c");
+		nfa.addTransition("a", '0', "c");
+		nfa.addTransition("b", '1', "c");
+		check(nfa.accepts("0") && !nfa.accepts("1"), "start a");
+		nfa.addStartState("b");
+		check(!nfa.accepts("0") && nfa.accepts("1"), "start b");
+		equal(nfa.getDFA().compile().accepts("1"), nfa.accepts("1"), "same as the DFA");
+	}
+
+	/**
+	 * Symbols outside the alphabet are rejected and e alone is the empty string
+	 */
+	public static void testAlphabet() {
+		NFA nfa = new NFA();
+		nfa.addFinalState("a");
+		nfa.addStartState("a");
+		nfa.addTransition("a", '0', "a");
+		check(nfa.accepts("e") && nfa.accepts("") && nfa.accepts("00"), "accepted");
+		check(!nfa.accepts("01") && !nfa.accepts("ee"), "rejected");
+	}
+
+	/**
+	 * An NFA without a start state has nothing to simulate
+	 */
+	public static void testNoStartState() {
+		NFA nfa = new NFA();
+		nfa.addFinalState("a");
+		fails(IllegalStateException.class, () -> nfa.accepts("e"));
+	}
+}
@@ -0,0 +1,45 @@
+package fa.nfa;
+
+import static fa.Tests.equal;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import fa.bench.Generators;
+
+/**
+ * Tests for determinizing one BFS level at a time on a pool
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ParallelConversionTest {
+
+	/**
+	 * Any number of threads builds the DFA the sequential search builds
+	 */
+	public static void testSameDFAForAnyPoolSize() {
+		Random r = new Random(8);
+		NFA[] nfas = new NFA[12];
+		for (int i = 0; i < 10; i++) {
+			nfas[i] = Reference.random(r, 2 + r.nextInt(12), "01e", r.nextInt(40));
+		}
+		//levels wide enough to be split between several tasks
+		nfas[10] = Generators.exponential(10);
+		nfas[11] = Generators.largeAlphabet(8, 200, 8);
+		for (int threads : new int[] {1, 2, 4}) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				for (int i = 0; i < nfas.length; i++) {
+					ConversionStats sequential = new ConversionStats();
+					ConversionStats parallel = new ConversionStats();
+					String expected = nfas[i].getDFA(sequential).toString();
+					String actual = nfas[i].getDFA(pool, parallel).toString();
+					equal(expected, actual, "NFA " + i + " on " + threads + " threads");
+					equal(sequential.getSubsetsExplored(), parallel.getSubsetsExplored(), "subsets " + i);
+					equal(sequential.getClosureHits(), parallel.getClosureHits(), "closure hits " + i);
+				}
+			} finally {
+				pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.fails;
+
+import java.util.Arrays;
+
+import fa.dfa.IntervalDFA;
+
+/**
+ * Tests for range transitions and the interval DFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class RangeTest {
+
+	/**
+	 * The interval DFA reads ranges and single characters together
+	 */
+	public static void testIntervalDFA() {
+		NFA nfa = ranges();
+		IntervalDFA dfa = nfa.getIntervalDFA();
+		check(dfa.accepts("a1"), "a1");
+		check(dfa.accepts("z9"), "z9");
+		check(dfa.accepts("_"), "_");
+		check(!dfa.accepts("A1"), "A1");
+		check(!dfa.accepts("a"), "a");
+		check(!dfa.accepts(""), "empty string");
+	}
+
+	/**
+	 * The machines that only read single characters refuse ranges instead of ignoring them
+	 */
+	public static void testSymbolPathsRejectRanges() {
+		NFA nfa = ranges();
+		fails(IllegalStateException.class, () -> nfa.getDFA());
+		fails(IllegalStateException.class, () -> nfa.accepts("a1"));
+		fails(IllegalStateException.class, () -> new LazyDFA(nfa));
+		fails(IllegalStateException.class, () -> new IncrementalDFA(nfa));
+		fails(IllegalStateException.class, () -> new TextSearch(nfa));
+		fails(IllegalStateException.class, () -> MultiPattern.compile(Arrays.asList(Regex.toNFA("0"), nfa)));
+		//the passes that keep ranges still work
+		check(nfa.withoutEpsilons().getIntervalDFA().accepts("b2"), "without e transitions");
+		check(nfa.reduce().getIntervalDFA().accepts("b2"), "reduced");
+	}
+
+	/**
+	 * An NFA stops being usable by getDFA once a range is added
+	 */
+	public static void testRangeAddedLater() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addFinalState("b");
+		nfa.addTransition("a", 'x', "b");
+		check(nfa.accepts("x"), "before");
+		check(nfa.getDFA().accepts("x"), "DFA before");
+		nfa.addRangeTransition("a", '0', '9', "b");
+		fails(IllegalStateException.class, () -> nfa.accepts("x"));
+		fails(IllegalStateException.class, () -> nfa.getDFA());
+		check(nfa.getIntervalDFA().accepts("5"), "interval DFA after");
+	}
+
+	/**
+	 * A single character transition on e is free in the interval DFA too,
+	 * and only a range that covers e reads it
+	 */
+	public static void testEInIntervalDFA() {
+		NFA nfa = new NFA();
+		nfa.addStartState("a");
+		nfa.addState("b");
+		nfa.addFinalState("c");
+		nfa.addTransition("a", 'e', "b");
+		nfa.addRangeTransition("b", 'x', 'z', "c");
+		IntervalDFA dfa = nfa.getIntervalDFA();
+		check(dfa.accepts("y"), "free e");
+		check(!dfa.accepts("ey"), "e is not read");
+		nfa.addRangeTransition("a", 'e', 'e', "b");
+		check(nfa.getIntervalDFA().accepts("ey"), "e read by a range");
+		check(nfa.getIntervalDFA().accepts("y"), "still free");
+	}
+
+	//[a-z][0-9] | _
+	private static NFA ranges() {
+		NFA nfa = new NFA();
+		nfa.addStartState("s");
+		nfa.addState("letter");
+		nfa.addState("u");
+		nfa.addFinalState("f");
+		nfa.addRangeTransition("s", 'a', 'z', "letter");
+		nfa.addRangeTransition("letter", '0', '9', "f");
+		nfa.addTransition("s", '_', "u");
+		nfa.addEpsilonTransition("u", "f");
+		return nfa;
+	}
+}
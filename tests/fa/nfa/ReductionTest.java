@@ -0,0 +1,80 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import fa.Tests;
+
+/**
+ * Tests for shrinking an NFA before it is determinized
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class ReductionTest {
+
+	/**
+	 * The reduced NFA accepts the same strings and is never bigger
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(24);
+		for (int i = 0; i < 300; i++) {
+			NFA nfa = Reference.random(r, 1 + r.nextInt(8), "01e", r.nextInt(20));
+			NFA reduced = nfa.reduce();
+			check(reduced.getStates().size() <= nfa.getStates().size(), "state count " + i);
+			for (String s : Tests.strings("01", 6)) {
+				equal(Reference.accepts(nfa, s), Reference.accepts(reduced, s), "NFA " + i + " on " + s);
+			}
+		}
+	}
+
+	/**
+	 * Bisimilar branches become one state named after the first of them,
+	 * and dead states are dropped
+	 */
+	public static void testMergesBisimilarStates() {
+		NFA nfa = new NFA();
+		nfa.addStartState("s");
+		nfa.addState("a");
+		nfa.addState("b");
+		nfa.addState("dead");
+		nfa.addFinalState("f");
+		nfa.addFinalState("g");
+		nfa.addTransition("s", '0', "a");
+		nfa.addTransition("s", '0', "b");
+		nfa.addTransition("s", '1', "dead");
+		nfa.addTransition("a", '1', "f");
+		nfa.addTransition("b", '1', "g");
+		nfa.addTransition("dead", '0', "dead");
+		NFA reduced = nfa.reduce();
+		equal(new HashSet<String>(Arrays.asList("s", "a", "f")), Reference.names(reduced), "states");
+		equal("s", reduced.getStartState().getName(), "start state");
+	}
+
+	/**
+	 * A chain whose states only differ at the far end is split all the way
+	 * down in little time
+	 */
+	public static void testLongChainIsFast() {
+		int n = 50000;
+		NFA nfa = new NFA();
+		nfa.addStartState("q0");
+		for (int i = 1; i < n; i++) {
+			nfa.addState("q" + i);
+		}
+		nfa.addFinalState("f");
+		for (int i = 0; i + 1 < n; i++) {
+			nfa.addTransition("q" + i, '0', "q" + (i + 1));
+			nfa.addTransition("q" + i, '1', "q" + (i + 1));
+		}
+		nfa.addTransition("q" + (n - 1), '0', "f");
+		long t0 = System.nanoTime();
+		NFA reduced = nfa.reduce();
+		long ms = (System.nanoTime() - t0) / 1000000;
+		equal(n + 1, reduced.getStates().size(), "state count");
+		//one pass over all states per split took minutes for this chain
+		check(ms < 10000, "took " + ms + " ms");
+	}
+}
@@ -0,0 +1,141 @@
+package fa.nfa;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import fa.State;
+
+/**
+ * What the tests compare the engines against: a plain set based
+ * simulation of an NFA that only uses its public getters, and
+ * random NFAs to run both on.
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class Reference {
+
+	private Reference() {
+	}
+
+	/**
+	 * Simulates the NFA with sets of states. Unlike DFA.accepts, the
+	 * empty string is the empty string.
+	 * @param NFA nfa - the machine
+	 * @param String s - the input
+	 * @return boolean - true if some run ends in a final state
+	 */
+	public static boolean accepts(NFA nfa, String s) {
+		Set<NFAState> curr = closure(nfa, Set.of((NFAState) nfa.getStartState()));
+		for (char c : s.toCharArray()) {
+			Set<NFAState> next = new HashSet<NFAState>();
+			for (NFAState q : curr) {
+				Set<NFAState> to = nfa.getToState(q, c);
+				if (to != null && c != 'e') {
+					next.addAll(to);
+				}
+			}
+			curr = closure(nfa, next);
+		}
+		for (NFAState q : curr) {
+			if (nfa.getFinalStates().contains(q)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param NFA nfa - the machine
+	 * @param Set<NFAState> states - the states to start from
+	 * @return Set<NFAState> - the states reachable from them on e
+	 */
+	public static Set<NFAState> closure(NFA nfa, Set<NFAState> states) {
+		Set<NFAState> ret = new HashSet<NFAState>(states);
+		Deque<NFAState> todo = new ArrayDeque<NFAState>(states);
+		while (!todo.isEmpty()) {
+			Set<NFAState> to = nfa.getToState(todo.pop(), 'e');
+			if (to != null) {
+				for (NFAState t : to) {
+					if (ret.add(t)) {
+						todo.push(t);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Makes a random NFA with states q0 to q(n - 1), q0 the start state
+	 * @param Random r - where the randomness comes from
+	 * @param int n - the number of states
+	 * @param String symbols - the symbols, e for free transitions
+	 * @param int transitions - how many transitions to add
+	 * @return NFA - the machine
+	 */
+	public static NFA random(Random r, int n, String symbols, int transitions) {
+		NFA nfa = new NFA();
+		for (int i = 0; i < n; i++) {
+			if (r.nextInt(3) == 0) {
+				nfa.addFinalState("q" + i);
+			} else {
+				nfa.addState("q" + i);
+			}
+		}
+		nfa.addStartState("q0");
+		for (int i = 0; i < transitions; i++) {
+			nfa.addTransition("q" + r.nextInt(n), symbols.charAt(r.nextInt(symbols.length())),
+					"q" + r.nextInt(n));
+		}
+		return nfa;
+	}
+
+	/**
+	 * @param NFA nfa - the machine
+	 * @return String - its alphabet without e
+	 */
+	public static String symbols(NFA nfa) {
+		StringBuilder sb = new StringBuilder();
+		for (char c : nfa.getABC()) {
+			if (c != 'e') {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param NFA nfa - the machine
+	 * @return Set<String> - the names of its states
+	 */
+	public static Set<String> names(NFA nfa) {
+		Set<String> ret = new HashSet<String>();
+		for (State s : nfa.getStates()) {
+			ret.add(s.getName());
+		}
+		return ret;
+	}
+
+	/**
+	 * @param String s - a string
+	 * @return Set<Character> - the symbols in it
+	 */
+	public static Set<Character> chars(String s) {
+		Set<Character> ret = new HashSet<Character>();
+		for (char c : s.toCharArray()) {
+			ret.add(c);
+		}
+		return ret;
+	}
+
+	/**
+	 * Turns a string into DFA.accepts' input, where e is the empty string
+	 * @param String s - the input
+	 * @return String - s, or e if s is empty
+	 */
+	public static String dfaInput(String s) {
+		return s.isEmpty() ? "e" : s;
+	}
+}
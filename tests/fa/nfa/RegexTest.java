@@ -0,0 +1,85 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+import static fa.Tests.fails;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import fa.Tests;
+
+/**
+ * Tests for building NFAs from regular expressions
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class RegexTest {
+
+	/**
+	 * Random expressions accept what java.util.regex matches, with one
+	 * state per symbol plus a start state and no free transitions
+	 */
+	public static void testRandomAgainstPattern() {
+		Random r = new Random(22);
+		List<String> inputs = Tests.strings("01", 6);
+		for (int i = 0; i < 300; i++) {
+			String regex = expression(r, 3);
+			NFA nfa = Regex.toNFA(regex);
+			Pattern pattern = Pattern.compile(regex);
+			int positions = regex.replaceAll("[^01]", "").length();
+			equal(positions + 1, nfa.getStates().size(), "states of " + regex);
+			check(!nfa.getABC().contains('e'), "free transition in " + regex);
+			for (String s : inputs) {
+				equal(pattern.matcher(s).matches(), Reference.accepts(nfa, s), regex + " on " + s);
+			}
+		}
+	}
+
+	/**
+	 * Escaped operators are literal symbols, and states are named by position
+	 */
+	public static void testEscapesAndNames() {
+		NFA nfa = Regex.toNFA("\\*(\\||a)+");
+		check(!nfa.accepts("*"), "needs one more symbol");
+		check(nfa.accepts("*|a|"), "*|a|");
+		check(!nfa.accepts("**"), "**");
+		equal(4, nfa.getStates().size(), "states");
+		check(Reference.names(nfa).contains("q0") && Reference.names(nfa).contains("q3"), "names");
+	}
+
+	/**
+	 * Malformed expressions and the symbol e are refused
+	 */
+	public static void testMalformed() {
+		for (String bad : new String[] {"e", "(0", "0)", "*0", "0|*", "0\\"}) {
+			fails(IllegalArgumentException.class, () -> Regex.toNFA(bad));
+		}
+	}
+
+	/**
+	 * A random expression over 0 and 1 that java.util.regex reads the same way
+	 */
+	private static String expression(Random r, int depth) {
+		int kind = depth == 0 ? r.nextInt(2) : r.nextInt(6);
+		String ret;
+		switch (kind) {
+			case 0:
+			case 1:
+				ret = String.valueOf("01".charAt(kind));
+				break;
+			case 2:
+				ret = expression(r, depth - 1) + expression(r, depth - 1);
+				break;
+			case 3:
+				ret = "(" + expression(r, depth - 1) + "|" + (r.nextInt(4) == 0 ? "" : expression(r, depth - 1)) + ")";
+				break;
+			default:
+				ret = "(" + expression(r, depth - 1) + ")";
+		}
+		if (r.nextInt(3) == 0) {
+			ret = "(" + ret + ")" + "*+?".charAt(r.nextInt(3));
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,66 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.util.Random;
+
+import fa.Tests;
+import fa.dfa.DFA;
+
+/**
+ * Tests for the hash indexed subset construction behind NFA.getDFA
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class SubsetConstructionTest {
+
+	/**
+	 * The first driver test, whose output is fixed by the assignment
+	 */
+	public static void testDriverExample() {
+		NFA nfa = new NFA();
+		nfa.addFinalState("b");
+		nfa.addStartState("a");
+		nfa.addTransitions(new String[] {"a", "a", "b"}, new char[] {'0', '1', 'e'}, new String[] {"a", "b", "a"});
+		String expected = "Q = { [a] [b, a] }\n"
+				+ "Sigma = { 0 1 }\n"
+				+ "delta =\n"
+				+ "                   0         1\n"
+				+ "       [a]       [a]    [b, a]\n"
+				+ "    [b, a]       [a]    [b, a]\n"
+				+ "q0 = [a]\n"
+				+ "F = { [b, a] }\n";
+		equal(expected, nfa.getDFA().toString(), "DFA text");
+	}
+
+	/**
+	 * The same set of states found in two orders is one DFA state
+	 */
+	public static void testSubsetsFoundInAnyOrderAreOneState() {
+		NFA nfa = new NFA();
+		nfa.addStartState("s");
+		nfa.addState("t");
+		nfa.addFinalState("a");
+		nfa.addFinalState("b");
+		nfa.addTransitions(new String[] {"s", "s", "s", "t", "t"}, new char[] {'0', '0', '1', '0', '0'},
+				new String[] {"a", "b", "t", "b", "a"});
+		DFA dfa = nfa.getDFA();
+		//[s], [a, b], [t] and the empty subset
+		equal(4, dfa.getStates().size(), "state count");
+		check(dfa.accepts("0") && dfa.accepts("10") && !dfa.accepts("1"), "language");
+	}
+
+	/**
+	 * Random NFAs with free transitions agree with the reference simulation
+	 */
+	public static void testRandomAgainstReference() {
+		Random r = new Random(1);
+		for (int i = 0; i < 300; i++) {
+			NFA nfa = Reference.random(r, 2 + r.nextInt(6), "01e", r.nextInt(14));
+			DFA dfa = nfa.getDFA();
+			for (String s : Tests.strings(Reference.symbols(nfa), 6)) {
+				equal(Reference.accepts(nfa, s), dfa.accepts(Reference.dfaInput(s)), "NFA " + i + " on " + s);
+			}
+		}
+	}
+}
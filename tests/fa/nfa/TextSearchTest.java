@@ -0,0 +1,86 @@
+package fa.nfa;
+
+import static fa.Tests.check;
+import static fa.Tests.equal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import fa.Tests;
+
+/**
+ * Tests for finding the matches of an NFA in a text
+ * @author Ben Harper and Andrew Haddon
+ */
+public final class TextSearchTest {
+
+	/**
+	 * Every end gets the leftmost start of a non empty match ending there
+	 */
+	public static void testRandomAgainstBruteForce() {
+		Random r = new Random(21);
+		for (int i = 0; i < 300; i++) {
+			NFA nfa = Reference.random(r, 1 + r.nextInt(5), "01e", r.nextInt(10));
+			StringBuilder text = new StringBuilder();
+			int len = r.nextInt(30);
+			for (int j = 0; j < len; j++) {
+				text.append("012".charAt(r.nextInt(3)));
+			}
+			TextSearch search = new TextSearch(nfa);
+			equal(bruteForce(nfa, text.toString()), search.findAll(text), "NFA " + i + " in " + text);
+		}
+	}
+
+	/**
+	 * Byte buffers are read as Latin-1 from their position
+	 */
+	public static void testByteBuffer() {
+		TextSearch search = new TextSearch(Regex.toNFA("ab+"));
+		ByteBuffer bytes = ByteBuffer.wrap("xxabbxab".getBytes(StandardCharsets.ISO_8859_1));
+		bytes.position(2);
+		List<TextSearch.Match> expected = Arrays.asList(new TextSearch.Match(0, 2), new TextSearch.Match(0, 3),
+				new TextSearch.Match(4, 6));
+		equal(expected, search.findAll(bytes), "matches");
+		equal(2, bytes.position(), "position");
+	}
+
+	/**
+	 * A pattern that matches at every end of a long text takes linear time
+	 */
+	public static void testLongTextIsLinear() {
+		TextSearch search = new TextSearch(Regex.toNFA("(0|1)*1"));
+		char[] ones = new char[400000];
+		Arrays.fill(ones, '1');
+		long t0 = System.nanoTime();
+		List<TextSearch.Match> found = search.findAll(new String(ones));
+		long ms = (System.nanoTime() - t0) / 1000000;
+		equal(ones.length, found.size(), "match count");
+		equal(new TextSearch.Match(0, ones.length), found.get(ones.length - 1), "last match");
+		//testing every end on its own took minutes for this text
+		check(ms < 5000, "took " + ms + " ms");
+	}
+
+	/**
+	 * A nullable pattern doesn't print anything
+	 */
+	public static void testNullablePatternIsSilent() {
+		equal("", Tests.stdout(() -> new TextSearch(Regex.toNFA("1*"))), "output");
+	}
+
+	private static List<TextSearch.Match> bruteForce(NFA nfa, String text) {
+		List<TextSearch.Match> ret = new ArrayList<TextSearch.Match>();
+		for (int end = 1; end <= text.length(); end++) {
+			for (int start = 0; start < end; start++) {
+				if (Reference.accepts(nfa, text.substring(start, end))) {
+					ret.add(new TextSearch.Match(start, end));
+					break;
+				}
+			}
+		}
+		return ret;
+	}
+}